@@ -0,0 +1,242 @@
+package demo;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.*;
+import java.util.concurrent.*;
+
+// Plans many workbooks without a user interface, e.g. for nightly replanning on a server:
+//   Graph [--out dir] [--format xlsx|csv|tsv] [--threads n] [--parses n] [--budget ms]
+//           [--max-samples n] [--patience n] [--saturation share] [--coverage share] [--stats]
+//           [--strategies pipeline] [--cache dir] [--cache-size mb] [--resume] [--all-orders]
+//           workbooks or directories...
+// Directories contain workbooks directly. Every input gets its own <name>_build_orders.xlsx (or
+// .csv/.tsv, which also take orders too long for an Excel row), next to it or in --out.
+// Workbooks are planned concurrently on --threads workers (all cores by default). At most
+// --parses of them are read at the same time (default 2), which caps the heap spent on POI.
+// Exact search and sampling get --budget milliseconds each (default 10000). Sampling also stops
+// early by the adaptive StopPolicy, whose criteria the remaining options override; a share of 0
+// switches saturation or coverage off. --stats adds the run's RunStatistics to every output.
+// --strategies picks the PlanningCore pipeline, by default exact,beam,sampling,local. --cache
+// keeps results in a PlanCache in dir, limited to --cache-size megabytes (default 256); a
+// workbook or graph found there is answered from it without planning, or with --resume planned
+// on from the cached orders. A workbook that changed since it was planned at the same path is
+// replanned incrementally from its previous orders with a tenth of the budget. --all-orders also
+// streams every distinct order the strategies find to <name>_all_orders.xlsx (or .csv/.tsv)
+// while they run. At the end a summary of the timings is printed; the exit code is 1 if any
+// workbook failed.
+class BatchPlanner {
+    static final String OUTPUT_SUFFIX = "_build_orders.";
+    static final String ALL_ORDERS_SUFFIX = "_all_orders.";
+
+    // Returns the exit code
+    static int run(String[] args) {
+        File outputDirectory = null;
+        int threads = Runtime.getRuntime().availableProcessors();
+        int parses = 2;
+        long budgetMillis = 10000;
+        String format = "xlsx";
+        List<File> inputs = new ArrayList<>();
+        Long maxSamples = null;
+        Long patience = null;
+        Double saturation = null;
+        Double coverage = null;
+        boolean statistics = false;
+        List<List<PlanningStrategy>> pipeline = PlanningCore.parse(PlanningCore.DEFAULT_PIPELINE);
+        File cacheDirectory = null;
+        long cacheBytes = PlanCache.DEFAULT_MAX_BYTES;
+        boolean resume = false;
+        boolean allOrders = false;
+
+        try {
+            for (int i = 0; i < args.length; i++) {
+                switch (args[i]) {
+                    case "--out":
+                        outputDirectory = new File(value(args, ++i));
+                        break;
+                    case "--format":
+                        format = value(args, ++i);
+                        if (!format.equals("xlsx") && !format.equals("csv") && !format.equals("tsv")) {
+                            throw new IllegalArgumentException("Unknown format " + format);
+                        }
+                        break;
+                    case "--threads":
+                        threads = Integer.parseInt(value(args, ++i));
+                        break;
+                    case "--parses":
+                        parses = Integer.parseInt(value(args, ++i));
+                        break;
+                    case "--budget":
+                        budgetMillis = Long.parseLong(value(args, ++i));
+                        break;
+                    case "--max-samples":
+                        maxSamples = Long.parseLong(value(args, ++i));
+                        break;
+                    case "--patience":
+                        patience = Long.parseLong(value(args, ++i));
+                        break;
+                    case "--saturation":
+                        saturation = Double.parseDouble(value(args, ++i));
+                        break;
+                    case "--coverage":
+                        coverage = Double.parseDouble(value(args, ++i));
+                        break;
+                    case "--stats":
+                        statistics = true;
+                        break;
+                    case "--strategies":
+                        pipeline = PlanningCore.parse(value(args, ++i));
+                        break;
+                    case "--cache":
+                        cacheDirectory = new File(value(args, ++i));
+                        break;
+                    case "--cache-size":
+                        cacheBytes = Long.parseLong(value(args, ++i)) << 20;
+                        break;
+                    case "--resume":
+                        resume = true;
+                        break;
+                    case "--all-orders":
+                        allOrders = true;
+                        break;
+                    default:
+                        addInputs(new File(args[i]), inputs);
+                        break;
+                }
+            }
+            if (threads < 1 || parses < 1 || budgetMillis < 0) {
+                throw new IllegalArgumentException("--threads and --parses need at least 1, --budget at least 0");
+            }
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            System.err.println("Usage: Graph [--out dir] [--format xlsx|csv|tsv] [--threads n] [--parses n] [--budget ms]"
+                    + " [--max-samples n] [--patience n] [--saturation share] [--coverage share] [--stats]"
+                    + " [--strategies pipeline] [--cache dir] [--cache-size mb] [--resume] [--all-orders] workbooks or directories...");
+            return 1;
+        }
+
+        if (inputs.isEmpty()) {
+            System.err.println("No workbooks found.");
+            return 1;
+        }
+        if (outputDirectory != null && !outputDirectory.isDirectory() && !outputDirectory.mkdirs()) {
+            System.err.println("Cannot create output directory " + outputDirectory);
+            return 1;
+        }
+
+        StopPolicy sampling = StopPolicy.adaptive(budgetMillis);
+        if (maxSamples != null) {
+            sampling.maxSamples(maxSamples);
+        }
+        if (patience != null) {
+            sampling.patience(patience);
+        }
+        if (saturation != null) {
+            sampling.saturation(saturation, StopPolicy.DEFAULT_WINDOW);
+        }
+        if (coverage != null) {
+            sampling.coverage(coverage);
+        }
+        PlanCache cache = null;
+        if (cacheDirectory != null) {
+            try {
+                cache = new PlanCache(cacheDirectory.toPath(), cacheBytes).setResume(resume);
+            } catch (IOException | IllegalArgumentException e) {
+                System.err.println("Cannot use cache " + cacheDirectory + ": " + e.getMessage());
+                return 1;
+            }
+        }
+        return plan(inputs, outputDirectory, format, threads, parses, budgetMillis, sampling, pipeline, cache, statistics, allOrders);
+    }
+
+    private static String value(String[] args, int i) {
+        if (i >= args.length) {
+            throw new IllegalArgumentException(args[i - 1] + " needs a value");
+        }
+        return args[i];
+    }
+
+    // Workbooks in a directory, skipping results of earlier runs and Excel lock files
+    private static void addInputs(File path, List<File> inputs) {
+        if (path.isDirectory()) {
+            File[] files = path.listFiles();
+            if (files == null) {
+                throw new IllegalArgumentException("Cannot list directory " + path);
+            }
+            Arrays.sort(files);
+            for (File file : files) {
+                String name = file.getName();
+                if (file.isFile() && name.endsWith(".xlsx") && !name.contains(OUTPUT_SUFFIX) && !name.contains(ALL_ORDERS_SUFFIX)
+                        && !name.startsWith("~$")) {
+                    inputs.add(file);
+                }
+            }
+        } else if (path.isFile()) {
+            inputs.add(path);
+        } else {
+            throw new IllegalArgumentException("No such file or directory: " + path);
+        }
+    }
+
+    static File outputFor(File input, File outputDirectory, String format) {
+        return outputFor(input, outputDirectory, OUTPUT_SUFFIX, format);
+    }
+
+    private static File outputFor(File input, File outputDirectory, String suffix, String format) {
+        String name = input.getName();
+        String base = name.toLowerCase().endsWith(".xlsx") ? name.substring(0, name.length() - 5) : name;
+        File directory = outputDirectory != null ? outputDirectory : input.getAbsoluteFile().getParentFile();
+        return new File(directory, base + suffix + format);
+    }
+
+    static int plan(List<File> inputs, File outputDirectory, String format, int threads, int parses, long budgetMillis,
+                    StopPolicy sampling, List<List<PlanningStrategy>> pipeline, PlanCache cache, boolean statistics,
+                    boolean allOrders) {
+        long started = System.nanoTime();
+        Semaphore parsePermits = new Semaphore(parses);
+        ExecutorService pool = Executors.newFixedThreadPool(Math.min(threads, inputs.size()));
+
+        Map<File, Future<Graph.PlanResult>> results = new LinkedHashMap<>();
+        for (File input : inputs) {
+            File output = outputFor(input, outputDirectory, format);
+            Graph.PlanMonitor monitor = new Graph.PlanMonitor();
+            monitor.writeStatistics = statistics;
+            if (allOrders) {
+                monitor.allOrders = outputFor(input, outputDirectory, ALL_ORDERS_SUFFIX, format);
+            }
+            results.put(input, pool.submit(() -> Graph.planWorkbook(input, output, budgetMillis, sampling, pipeline, cache, parsePermits, monitor)));
+        }
+        pool.shutdown();
+
+        int failed = 0;
+        long readMillis = 0;
+        long solveMillis = 0;
+        long writeMillis = 0;
+        System.out.println();
+        System.out.printf("%-40s %8s %12s %10s %8s %8s %8s%n", "Workbook", "Nodes", "Weight", "Gap", "Read", "Solve", "Write");
+        for (Map.Entry<File, Future<Graph.PlanResult>> entry : results.entrySet()) {
+            try {
+                Graph.PlanResult result = entry.getValue().get();
+                System.out.printf("%-40s %8d %12.2f %10.2f %6dms %6dms %6dms%n", entry.getKey().getName(),
+                        result.vertices, result.weight, result.gap, result.readMillis, result.solveMillis, result.writeMillis);
+                readMillis += result.readMillis;
+                solveMillis += result.solveMillis;
+                writeMillis += result.writeMillis;
+            } catch (ExecutionException e) {
+                failed++;
+                Throwable cause = e.getCause();
+                System.out.printf("%-40s FAILED: %s%n", entry.getKey().getName(), cause instanceof IOException || cause instanceof IllegalStateException ? cause.getMessage() : cause);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                pool.shutdownNow();
+                System.err.println("Interrupted");
+                return 1;
+            }
+        }
+
+        long wallMillis = (System.nanoTime() - started) / 1_000_000;
+        System.out.printf("%d workbooks, %d failed, %d ms wall time (read %d ms, solve %d ms, write %d ms summed over workbooks)%n",
+                inputs.size(), failed, wallMillis, readMillis, solveMillis, writeMillis);
+        return failed == 0 ? 0 : 1;
+    }
+}
@@ -0,0 +1,435 @@
+package demo;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.function.BooleanSupplier;
+import java.util.stream.IntStream;
+
+// Deterministic beam search over build orders. Level p holds the best width partial orders of
+// length p; every buildable node of every partial order is a candidate extension, and the width
+// best extensions make up level p + 1. Extensions are ranked by their discounted weight so far
+// plus an estimate of the next position, taken from the average per step idea of
+// nachDurchschnitt's averageMatrix: the best frontier node's average weight per step over a
+// chain of up to LOOKAHEAD nodes starting there, so a partial order that opens the way to heavy
+// nodes ranks above one that only built a heavy node itself. The candidates of a level
+// are scored in parallel, one partial order per task, and ties are broken by partial order and
+// frontier slot, so the result does not depend on the thread count.
+// Every partial order copies the built set of its parent, so the width is reduced on very large
+// graphs to keep the copying under MAX_COPIED_WORDS words.
+class BeamSearch {
+    static final int DEFAULT_WIDTH = 32;
+    static final int LOOKAHEAD = 4;
+    static final long MAX_COPIED_WORDS = 1L << 31;
+
+    private final int vertices;
+    private final int[] outOffsets;
+    private final int[] outTargets;
+    private final int[] startNodes;
+    private final int[] weights;
+    private final double[] factor;
+    // Best average weight per step of a chain starting at the node
+    private final double[] average;
+    private BooleanSupplier stopCondition = () -> false;
+
+    // The prefix of a partial order as a chain back to its first node; partial orders share
+    // their common prefixes, and dropping a partial order does not keep its built set alive
+    private static final class Link {
+        final int node;
+        final Link previous;
+
+        Link(int node, Link previous) {
+            this.node = node;
+            this.previous = previous;
+        }
+    }
+
+    private static final class State {
+        final Link last;
+        final double weight;
+        // Built nodes and nodes on the frontier
+        final long[] seen;
+        final int[] frontier;
+        final int frontierSize;
+        // The two best frontier averages, to rate an extension without rescanning the frontier
+        final int bestNode;
+        final double bestAverage;
+        final double secondAverage;
+
+        State(Link last, double weight, long[] seen, int[] frontier, int frontierSize, double[] average) {
+            this.last = last;
+            this.weight = weight;
+            this.seen = seen;
+            this.frontier = frontier;
+            this.frontierSize = frontierSize;
+            int best = -1;
+            double first = 0.0;
+            double second = 0.0;
+            for (int k = 0; k < frontierSize; k++) {
+                double a = average[frontier[k]];
+                if (best == -1 || a > first) {
+                    second = best == -1 ? second : first;
+                    first = a;
+                    best = frontier[k];
+                } else if (a > second) {
+                    second = a;
+                }
+            }
+            bestNode = best;
+            bestAverage = first;
+            secondAverage = second;
+        }
+    }
+
+    BeamSearch(Graph graph, int[] startNodes) {
+        this(graph.index().withStartNodes(startNodes));
+    }
+
+    // Shares the tables of index, which must have its start nodes attached
+    BeamSearch(GraphIndex index) {
+        this(index, averages(index));
+    }
+
+    // As above with the averages computed before, e.g. read from a PlanCache
+    BeamSearch(GraphIndex index, double[] average) {
+        if (average.length != index.vertices) {
+            throw new IllegalArgumentException("Got " + average.length + " averages for " + index.vertices + " nodes");
+        }
+        vertices = index.vertices;
+        outOffsets = index.outOffsets;
+        outTargets = index.outTargets;
+        startNodes = index.startNodes;
+        weights = index.incomingWeights;
+        factor = index.discountFactors;
+        this.average = average;
+    }
+
+    // For every node the best average weight per step of a chain of up to LOOKAHEAD nodes
+    // starting there; depends on the graph only, not on the start nodes
+    static double[] averages(GraphIndex index) {
+        int vertices = index.vertices;
+        int[] outOffsets = index.outOffsets;
+        int[] outTargets = index.outTargets;
+        int[] weights = index.incomingWeights;
+
+        // chain[v] is the heaviest chain of d nodes starting at v, revisits allowed
+        double[] average = new double[vertices];
+        long[] chain = new long[vertices];
+        long[] longer = new long[vertices];
+        for (int v = 0; v < vertices; v++) {
+            chain[v] = Math.max(0, weights[v]);
+            average[v] = chain[v];
+        }
+        for (int d = 2; d <= LOOKAHEAD; d++) {
+            for (int v = 0; v < vertices; v++) {
+                long next = 0;
+                for (int k = outOffsets[v]; k < outOffsets[v + 1]; k++) {
+                    next = Math.max(next, chain[outTargets[k]]);
+                }
+                longer[v] = Math.max(0, weights[v]) + next;
+                average[v] = Math.max(average[v], (double) longer[v] / d);
+            }
+            long[] swap = chain;
+            chain = longer;
+            longer = swap;
+        }
+        return average;
+    }
+
+    // Bring averages up to date after the edges around the changed nodes changed. The average
+    // of a node only looks LOOKAHEAD - 1 steps ahead, so only nodes that reach a changed node
+    // within that many steps are recomputed, from chains over the nodes they can reach in turn.
+    // Falls back to computing everything when that is a large part of the graph.
+    static void patchAverages(GraphIndex index, double[] average, int[] changed) {
+        int vertices = index.vertices;
+        int[] outOffsets = index.outOffsets;
+        int[] outTargets = index.outTargets;
+        int[] weights = index.incomingWeights;
+
+        // depth[v] > 0: chains of up to depth[v] nodes starting at v are needed; the affected
+        // nodes need all LOOKAHEAD, the nodes after them fewer
+        int[] depth = new int[vertices];
+        int[] affected = new int[vertices];
+        int count = 0;
+        for (int v : changed) {
+            if (depth[v] == 0) {
+                depth[v] = LOOKAHEAD;
+                affected[count++] = v;
+            }
+        }
+        for (int from = 0, steps = 1; steps < LOOKAHEAD; steps++) {
+            int to = count;
+            for (int i = from; i < to; i++) {
+                int v = affected[i];
+                for (int k = index.inOffsets[v]; k < index.inOffsets[v + 1]; k++) {
+                    int u = index.inSources[k];
+                    if (depth[u] == 0) {
+                        depth[u] = LOOKAHEAD;
+                        affected[count++] = u;
+                    }
+                }
+            }
+            from = to;
+        }
+        if (count > vertices / 4) {
+            System.arraycopy(averages(index), 0, average, 0, vertices);
+            return;
+        }
+
+        // The nodes after them, level by level: a node first reached from nodes needed to depth d
+        // is needed to d - 1, and deeper levels are expanded first, so that is its largest depth
+        int[] needed = Arrays.copyOf(affected, vertices);
+        int size = count;
+        for (int from = 0, d = LOOKAHEAD; d > 1; d--) {
+            int to = size;
+            for (int i = from; i < to; i++) {
+                int v = needed[i];
+                for (int k = outOffsets[v]; k < outOffsets[v + 1]; k++) {
+                    int next = outTargets[k];
+                    if (depth[next] == 0) {
+                        depth[next] = d - 1;
+                        needed[size++] = next;
+                    }
+                }
+            }
+            from = to;
+        }
+
+        long[] chain = new long[vertices];
+        long[] longer = new long[vertices];
+        for (int i = 0; i < count; i++) {
+            average[affected[i]] = Math.max(0, weights[affected[i]]);
+        }
+        for (int d = 1; d <= LOOKAHEAD; d++) {
+            // Chains of d nodes from every node needed to depth d or more
+            for (int i = 0; i < size; i++) {
+                int v = needed[i];
+                if (depth[v] < d) {
+                    continue;
+                }
+                long next = 0;
+                if (d > 1) {
+                    for (int k = outOffsets[v]; k < outOffsets[v + 1]; k++) {
+                        next = Math.max(next, chain[outTargets[k]]);
+                    }
+                }
+                longer[v] = Math.max(0, weights[v]) + next;
+            }
+            for (int i = 0; i < count; i++) {
+                int v = affected[i];
+                average[v] = Math.max(average[v], (double) longer[v] / d);
+            }
+            long[] swap = chain;
+            chain = longer;
+            longer = swap;
+        }
+    }
+
+    // Lets another thread end the search early; it then offers nothing
+    void setStopCondition(BooleanSupplier stopCondition) {
+        this.stopCondition = stopCondition;
+    }
+
+    // Width the search really uses for the requested width
+    int effectiveWidth(int width) {
+        long wordsPerLevel = (long) vertices * ((vertices >>> 6) + 1);
+        return (int) Math.max(1, Math.min(width, MAX_COPIED_WORDS / Math.max(1, wordsPerLevel)));
+    }
+
+    // Run the search with up to width partial orders per level, offer the complete orders to
+    // store and return the best weight, NEGATIVE_INFINITY if it was stopped
+    double search(int width, BuildOrderStore store) {
+        if (width < 1) {
+            throw new IllegalArgumentException("Beam width must be at least 1, got " + width);
+        }
+        width = effectiveWidth(width);
+
+        long[] rootSeen = new long[(vertices + 63) >>> 6];
+        int[] rootFrontier = new int[startNodes.length];
+        int rootSize = 0;
+        for (int startNode : startNodes) {
+            if ((rootSeen[startNode >>> 6] & (1L << startNode)) == 0) {
+                rootSeen[startNode >>> 6] |= 1L << startNode;
+                rootFrontier[rootSize++] = startNode;
+            }
+        }
+        State[] beam = {new State(null, 0.0, rootSeen, rootFrontier, rootSize, average)};
+
+        double[] keys = new double[0];
+        int[] offsets = new int[width + 1];
+        int[] selected = new int[width];
+        for (int position = 0; position < vertices; position++) {
+            if (stopCondition.getAsBoolean()) {
+                return Double.NEGATIVE_INFINITY;
+            }
+
+            // Candidate k of partial order s sits at offsets[s] + k
+            offsets[0] = 0;
+            for (int s = 0; s < beam.length; s++) {
+                offsets[s + 1] = offsets[s] + beam[s].frontierSize;
+            }
+            int candidates = offsets[beam.length];
+            if (candidates == 0) {
+                throw new IllegalStateException("Only " + position + " of " + vertices + " nodes are reachable from the start nodes");
+            }
+            if (keys.length < candidates) {
+                keys = new double[Math.max(candidates, keys.length * 2)];
+            }
+
+            State[] current = beam;
+            double[] candidateKeys = keys;
+            int expansionPosition = position;
+            double nextFactor = factor[Math.min(vertices, position + 1)];
+            IntStream.range(0, current.length).parallel().forEach(s -> {
+                State state = current[s];
+                for (int k = 0; k < state.frontierSize; k++) {
+                    int node = state.frontier[k];
+                    double opened = node == state.bestNode ? state.secondAverage : state.bestAverage;
+                    for (int e = outOffsets[node]; e < outOffsets[node + 1]; e++) {
+                        int next = outTargets[e];
+                        if ((state.seen[next >>> 6] & (1L << next)) == 0) {
+                            opened = Math.max(opened, average[next]);
+                        }
+                    }
+                    candidateKeys[offsets[s] + k] = state.weight + weights[node] * factor[expansionPosition] + opened * nextFactor;
+                }
+            });
+
+            int count = selectBest(keys, candidates, width, selected);
+            State[] next = new State[count];
+            IntStream.range(0, count).parallel().forEach(i -> next[i] = extend(current, offsets, selected[i], expansionPosition));
+            beam = next;
+        }
+
+        double best = Double.NEGATIVE_INFINITY;
+        int[] order = new int[vertices];
+        for (State state : beam) {
+            Link link = state.last;
+            for (int p = vertices - 1; p >= 0; p--) {
+                order[p] = link.node;
+                link = link.previous;
+            }
+            store.offer(order, state.weight);
+            best = Math.max(best, state.weight);
+        }
+        return best;
+    }
+
+    // Put the indices of the best width candidates into selected and return how many there are.
+    // A min-heap of the kept candidates, the worst at the root; equal keys prefer the lower
+    // index, i.e. the earlier partial order and then the earlier frontier slot.
+    private static int selectBest(double[] keys, int candidates, int width, int[] selected) {
+        int size = 0;
+        for (int c = 0; c < candidates; c++) {
+            if (size < width) {
+                selected[size] = c;
+                siftUp(selected, size++, keys);
+            } else if (better(c, selected[0], keys)) {
+                selected[0] = c;
+                siftDown(selected, size, keys);
+            }
+        }
+        // Best first, so that the next level and the final orders keep a stable order
+        Integer[] sorted = new Integer[size];
+        for (int i = 0; i < size; i++) {
+            sorted[i] = selected[i];
+        }
+        Arrays.sort(sorted, (a, b) -> a.equals(b) ? 0 : better(a, b, keys) ? -1 : 1);
+        for (int i = 0; i < size; i++) {
+            selected[i] = sorted[i];
+        }
+        return size;
+    }
+
+    private static boolean better(int a, int b, double[] keys) {
+        return keys[a] > keys[b] || (keys[a] == keys[b] && a < b);
+    }
+
+    private static void siftUp(int[] heap, int i, double[] keys) {
+        int c = heap[i];
+        while (i > 0) {
+            int parent = (i - 1) >>> 1;
+            if (!better(heap[parent], c, keys)) {
+                break;
+            }
+            heap[i] = heap[parent];
+            i = parent;
+        }
+        heap[i] = c;
+    }
+
+    private static void siftDown(int[] heap, int size, double[] keys) {
+        int c = heap[0];
+        int i = 0;
+        while (true) {
+            int child = 2 * i + 1;
+            if (child >= size) {
+                break;
+            }
+            if (child + 1 < size && better(heap[child], heap[child + 1], keys)) {
+                child++;
+            }
+            if (!better(c, heap[child], keys)) {
+                break;
+            }
+            heap[i] = heap[child];
+            i = child;
+        }
+        heap[i] = c;
+    }
+
+    // The partial order of candidate c: its parent plus the candidate's node at position
+    private State extend(State[] beam, int[] offsets, int c, int position) {
+        int s = 0;
+        while (offsets[s + 1] <= c) {
+            s++;
+        }
+        State parent = beam[s];
+        int node = parent.frontier[c - offsets[s]];
+
+        long[] seen = parent.seen.clone();
+        int[] frontier = new int[parent.frontierSize - 1 + outOffsets[node + 1] - outOffsets[node]];
+        int size = 0;
+        for (int k = 0; k < parent.frontierSize; k++) {
+            if (parent.frontier[k] != node) {
+                frontier[size++] = parent.frontier[k];
+            }
+        }
+        for (int k = outOffsets[node]; k < outOffsets[node + 1]; k++) {
+            int next = outTargets[k];
+            if ((seen[next >>> 6] & (1L << next)) == 0) {
+                seen[next >>> 6] |= 1L << next;
+                frontier[size++] = next;
+            }
+        }
+        double weight = parent.weight + weights[node] * factor[position];
+        return new State(new Link(node, parent.last), weight, seen, frontier, size, average);
+    }
+
+    // Arguments: workbook [width] [output file]
+    // Writes the orders of the last level like planWorkbook
+    public static void main(String[] args) throws IOException {
+        if (args.length < 1) {
+            System.err.println("Usage: BeamSearch workbook.xlsx [width] [output file]");
+            System.exit(1);
+        }
+        File file = new File(args[0]);
+        int width = args.length > 1 ? Integer.parseInt(args[1]) : DEFAULT_WIDTH;
+        String output = args.length > 2 ? args[2] : new File(file.getAbsoluteFile().getParentFile(), "build_orders.xlsx").getPath();
+
+        Graph g = new Graph();
+        int[] startNodes = g.toIndices(GraphWorkbookReader.read(file, g::addEdge));
+        BeamSearch search = new BeamSearch(g, startNodes);
+        BuildOrderStore store = new BuildOrderStore(width);
+        long started = System.nanoTime();
+        double best = search.search(width, store);
+        System.out.printf("Best order: %.2f, width %d, %d ms%n", best, search.effectiveWidth(width), (System.nanoTime() - started) / 1_000_000);
+
+        try (BuildOrderWriter writer = BuildOrderWriter.open(output, g.nodeNames())) {
+            for (BuildOrderStore.Entry entry : store.bestOrders()) {
+                writer.write(entry.order, entry.weight);
+            }
+        }
+        System.out.println("Build orders with weights have been written to: " + output);
+    }
+}
@@ -0,0 +1,199 @@
+package demo;
+
+import java.util.*;
+
+// Keeps the best build orders of a run and recognises orders that were already seen. Orders are
+// identified by a 128-bit Zobrist fingerprint, the XOR of one random key per (position, node)
+// pair, so a sample costs two longs in the seen-set no matter how long the order is. Only the
+// top capacity orders by total weight are kept as int[] in a min-heap.
+class BuildOrderStore {
+    static class Entry {
+        final int[] order;
+        final double weight;
+
+        Entry(int[] order, double weight) {
+            this.order = order;
+            this.weight = weight;
+        }
+    }
+
+    private final int capacity;
+    private final int[][] heapOrders;
+    private final double[] heapWeights;
+    private int heapSize;
+
+    // Open-addressing set of fingerprints; the low half always has bit 0 set, so (0, 0) marks a free slot
+    private long[] seenHigh = new long[1024];
+    private long[] seenLow = new long[1024];
+    private int distinctOrders;
+    private long duplicateOrders;
+    private double bestWeight = Double.NEGATIVE_INFINITY;
+    private OrderLog log;
+
+    BuildOrderStore(int capacity) {
+        this.capacity = capacity;
+        heapOrders = new int[capacity][];
+        heapWeights = new double[capacity];
+    }
+
+    // Also hand every new distinct order to log the moment it is offered, whether it is kept or
+    // not; log writes it on its own thread, outside the store's lock
+    synchronized void setLog(OrderLog log) {
+        this.log = log;
+    }
+
+    synchronized boolean logs() {
+        return log != null;
+    }
+
+    static long zobristHigh(int position, int node) {
+        return mix(((long) position << 32 | node) * 0x9E3779B97F4A7C15L);
+    }
+
+    static long zobristLow(int position, int node) {
+        return mix(((long) node << 32 | position) ^ 0xD1B54A32D192ED03L);
+    }
+
+    // Finalizer of SplitMix64
+    private static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+
+    // Add an order whose fingerprint is not known yet
+    boolean offer(int[] order, double weight) {
+        long high = 0;
+        long low = 0;
+        for (int position = 0; position < order.length; position++) {
+            high ^= zobristHigh(position, order[position]);
+            low ^= zobristLow(position, order[position]);
+        }
+        return offer(high, low, order, weight);
+    }
+
+    // Record the order and keep a copy if it is among the best; false if it was seen before
+    synchronized boolean offer(long high, long low, int[] order, double weight) {
+        if (!addFingerprint(high, low | 1L)) {
+            duplicateOrders++;
+            return false;
+        }
+        if (log != null) {
+            log.add(order, weight);
+        }
+
+        bestWeight = Math.max(bestWeight, weight);
+        if (heapSize < capacity) {
+            heapOrders[heapSize] = order.clone();
+            heapWeights[heapSize] = weight;
+            siftUp(heapSize++);
+        } else if (capacity > 0 && weight > heapWeights[0]) {
+            // Reuse the array of the order that drops out
+            int[] evicted = heapOrders[0];
+            System.arraycopy(order, 0, evicted, 0, order.length);
+            heapWeights[0] = weight;
+            siftDown(0);
+        }
+        return true;
+    }
+
+    synchronized int distinctOrders() {
+        return distinctOrders;
+    }
+
+    synchronized long duplicateOrders() {
+        return duplicateOrders;
+    }
+
+    // Weight of the best order offered so far, NEGATIVE_INFINITY while there is none
+    synchronized double bestWeight() {
+        return bestWeight;
+    }
+
+    // Weight an order needs to get into the store, NEGATIVE_INFINITY while it is not full
+    synchronized double minWeight() {
+        return heapSize < capacity ? Double.NEGATIVE_INFINITY : heapWeights[0];
+    }
+
+    // The kept orders, best first
+    synchronized List<Entry> bestOrders() {
+        List<Entry> entries = new ArrayList<>(heapSize);
+        for (int i = 0; i < heapSize; i++) {
+            entries.add(new Entry(heapOrders[i].clone(), heapWeights[i]));
+        }
+        entries.sort((a, b) -> Double.compare(b.weight, a.weight));
+        return entries;
+    }
+
+    private boolean addFingerprint(long high, long low) {
+        if (distinctOrders * 2 >= seenHigh.length) {
+            long[] oldHigh = seenHigh;
+            long[] oldLow = seenLow;
+            seenHigh = new long[oldHigh.length * 2];
+            seenLow = new long[oldLow.length * 2];
+            for (int i = 0; i < oldHigh.length; i++) {
+                if (oldLow[i] != 0) {
+                    insert(oldHigh[i], oldLow[i]);
+                }
+            }
+        }
+        if (!insert(high, low)) {
+            return false;
+        }
+        distinctOrders++;
+        return true;
+    }
+
+    private boolean insert(long high, long low) {
+        int mask = seenHigh.length - 1;
+        int slot = (int) (high ^ (high >>> 32)) & mask;
+        while (seenLow[slot] != 0) {
+            if (seenHigh[slot] == high && seenLow[slot] == low) {
+                return false;
+            }
+            slot = (slot + 1) & mask;
+        }
+        seenHigh[slot] = high;
+        seenLow[slot] = low;
+        return true;
+    }
+
+    private void siftUp(int i) {
+        while (i > 0) {
+            int parent = (i - 1) >>> 1;
+            if (heapWeights[parent] <= heapWeights[i]) {
+                break;
+            }
+            swap(i, parent);
+            i = parent;
+        }
+    }
+
+    private void siftDown(int i) {
+        while (true) {
+            int smallest = i;
+            int left = 2 * i + 1;
+            int right = left + 1;
+            if (left < heapSize && heapWeights[left] < heapWeights[smallest]) {
+                smallest = left;
+            }
+            if (right < heapSize && heapWeights[right] < heapWeights[smallest]) {
+                smallest = right;
+            }
+            if (smallest == i) {
+                return;
+            }
+            swap(i, smallest);
+            i = smallest;
+        }
+    }
+
+    private void swap(int i, int j) {
+        int[] order = heapOrders[i];
+        heapOrders[i] = heapOrders[j];
+        heapOrders[j] = order;
+        double weight = heapWeights[i];
+        heapWeights[i] = heapWeights[j];
+        heapWeights[j] = weight;
+    }
+}
@@ -0,0 +1,239 @@
+package demo;
+
+import org.apache.poi.ss.SpreadsheetVersion;
+import org.apache.poi.ss.usermodel.*;
+import org.apache.poi.xssf.streaming.SXSSFWorkbook;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.List;
+
+// Writes build orders to disk one row at a time: the total weight in the first column and one
+// node per column after it. The .xlsx variant keeps only a sliding window of rows in memory and
+// starts a new sheet when one is full; .csv and .tsv files are plain buffered text.
+abstract class BuildOrderWriter implements Closeable {
+    private final String[] names;
+    private boolean headerWritten;
+
+    // names translates node ids into names, null writes the ids themselves
+    BuildOrderWriter(String[] names) {
+        this.names = names;
+    }
+
+    // Pick the format from the file extension: .csv, .tsv or Excel for everything else
+    static BuildOrderWriter open(String filePath, String[] names) throws IOException {
+        String lower = filePath.toLowerCase();
+        if (lower.endsWith(".csv")) {
+            return new DelimitedWriter(filePath, ',', names);
+        }
+        if (lower.endsWith(".tsv")) {
+            return new DelimitedWriter(filePath, '\t', names);
+        }
+        return new ExcelWriter(filePath, names);
+    }
+
+    void write(int[] order, double weight) throws IOException {
+        header(order.length);
+        startRow(weight);
+        for (int node : order) {
+            cell(names != null ? names[node] : String.valueOf(node));
+        }
+        endRow();
+    }
+
+    void write(List<String> order, double weight) throws IOException {
+        header(order.size());
+        startRow(weight);
+        for (String node : order) {
+            cell(node);
+        }
+        endRow();
+    }
+
+    private void header(int length) throws IOException {
+        if (!headerWritten) {
+            headerWritten = true;
+            writeHeader(length);
+        }
+    }
+
+    abstract void writeHeader(int length) throws IOException;
+
+    abstract void startRow(double weight) throws IOException;
+
+    abstract void cell(String node) throws IOException;
+
+    abstract void endRow() throws IOException;
+
+    // Add the summary of a run: a Statistics sheet in workbooks, a .stats.json file next to text output
+    abstract void writeStatistics(RunStatistics statistics) throws IOException;
+
+    static class ExcelWriter extends BuildOrderWriter {
+        private static final int WINDOW_ROWS = 100;
+        private static final int MAX_ROWS = SpreadsheetVersion.EXCEL2007.getMaxRows();
+        private static final int MAX_COLUMNS = SpreadsheetVersion.EXCEL2007.getMaxColumns();
+
+        private final String filePath;
+        private final SXSSFWorkbook workbook;
+        private final CellStyle decimalStyle;
+        private Sheet sheet;
+        private Row row;
+        private int rowIndex;
+        private int columnIndex;
+        private int orderLength;
+
+        ExcelWriter(String filePath, String[] names) {
+            super(names);
+            this.filePath = filePath;
+            workbook = new SXSSFWorkbook(WINDOW_ROWS);
+            workbook.setCompressTempFiles(true);
+            decimalStyle = workbook.createCellStyle();
+            decimalStyle.setDataFormat(workbook.createDataFormat().getFormat("#0.00"));
+        }
+
+        @Override
+        void writeHeader(int length) {
+            if (length + 1 > MAX_COLUMNS) {
+                throw new IllegalStateException("Build orders of " + length + " nodes do not fit into an Excel sheet, write a .csv file instead.");
+            }
+            orderLength = length;
+            newSheet();
+        }
+
+        private void newSheet() {
+            int number = workbook.getNumberOfSheets();
+            sheet = workbook.createSheet(number == 0 ? "Build Orders" : "Build Orders " + (number + 1));
+            Row header = sheet.createRow(0);
+            header.createCell(0).setCellValue("Weight");
+            for (int i = 1; i <= orderLength; i++) {
+                header.createCell(i).setCellValue(i);
+            }
+            rowIndex = 1;
+        }
+
+        @Override
+        void startRow(double weight) {
+            if (rowIndex == MAX_ROWS) {
+                newSheet();
+            }
+            row = sheet.createRow(rowIndex++);
+            Cell cellWeight = row.createCell(0);
+            cellWeight.setCellValue(weight);
+            cellWeight.setCellStyle(decimalStyle);
+            columnIndex = 1;
+        }
+
+        @Override
+        void cell(String node) {
+            row.createCell(columnIndex++).setCellValue(node);
+        }
+
+        @Override
+        void endRow() {
+            row = null;
+        }
+
+        @Override
+        void writeStatistics(RunStatistics statistics) {
+            Sheet stats = workbook.createSheet("Statistics");
+            int index = 0;
+            for (Object[] values : statistics.summaryRows()) {
+                Row statsRow = stats.createRow(index++);
+                statsRow.createCell(0).setCellValue((String) values[0]);
+                Cell value = statsRow.createCell(1);
+                if (values[1] instanceof Number) {
+                    value.setCellValue(((Number) values[1]).doubleValue());
+                    value.setCellStyle(decimalStyle);
+                } else {
+                    value.setCellValue(String.valueOf(values[1]));
+                }
+            }
+
+            index++;
+            Row header = stats.createRow(index++);
+            header.createCell(0).setCellValue("Best weight after ms");
+            header.createCell(1).setCellValue("Samples");
+            header.createCell(2).setCellValue("Best weight");
+            for (double[] point : statistics.curve()) {
+                Row pointRow = stats.createRow(index++);
+                pointRow.createCell(0).setCellValue(point[0]);
+                pointRow.createCell(1).setCellValue(point[1]);
+                pointRow.createCell(2).setCellValue(point[2]);
+                pointRow.getCell(0).setCellStyle(decimalStyle);
+                pointRow.getCell(2).setCellStyle(decimalStyle);
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            try (FileOutputStream fos = new FileOutputStream(filePath)) {
+                if (sheet == null) {
+                    workbook.createSheet("Build Orders");
+                }
+                workbook.write(fos);
+            } finally {
+                workbook.dispose();
+                workbook.close();
+            }
+        }
+    }
+
+    static class DelimitedWriter extends BuildOrderWriter {
+        private final String filePath;
+        private final Writer out;
+        private final char delimiter;
+
+        DelimitedWriter(String filePath, char delimiter, String[] names) throws IOException {
+            super(names);
+            this.filePath = filePath;
+            this.delimiter = delimiter;
+            out = Files.newBufferedWriter(Paths.get(filePath), StandardCharsets.UTF_8);
+        }
+
+        @Override
+        void writeHeader(int length) throws IOException {
+            out.write("Weight");
+            for (int i = 1; i <= length; i++) {
+                out.write(delimiter);
+                out.write(Integer.toString(i));
+            }
+            out.write('\n');
+        }
+
+        @Override
+        void startRow(double weight) throws IOException {
+            out.write(Double.toString(weight));
+        }
+
+        @Override
+        void cell(String node) throws IOException {
+            out.write(delimiter);
+            if (node.indexOf(delimiter) >= 0 || node.indexOf('"') >= 0 || node.indexOf('\n') >= 0 || node.indexOf('\r') >= 0) {
+                out.write('"');
+                out.write(node.replace("\"", "\"\""));
+                out.write('"');
+            } else {
+                out.write(node);
+            }
+        }
+
+        @Override
+        void endRow() throws IOException {
+            out.write('\n');
+        }
+
+        // build_orders.csv gets build_orders.stats.json
+        @Override
+        void writeStatistics(RunStatistics statistics) throws IOException {
+            String base = filePath.substring(0, filePath.length() - 4);
+            statistics.writeJson(Paths.get(base + ".stats.json"));
+        }
+
+        @Override
+        public void close() throws IOException {
+            out.close();
+        }
+    }
+}
@@ -0,0 +1,13 @@
+package demo;
+
+class Edge {
+    String source;
+    String destination;
+    int weight;
+
+    Edge(String source, String destination, int weight) {
+        this.source = source;
+        this.destination = destination;
+        this.weight = weight;
+    }
+}
@@ -0,0 +1,242 @@
+package demo;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+// Loads a graph from an edge list: the g.addEdge(a, b, w); lines of the GraphGerichtet*.txt
+// files or plain "source destination weight" lines, with // and # starting comments. Nodes are
+// numbered as in the file, the node count is the highest node number plus one. A binary copy is
+// kept next to the text file (path + ".bin") and memory-mapped instead of parsing as long as the
+// text file is unchanged. BinaryWriter writes that copy, also for files the NetworkGenerator
+// writes without ever holding the whole graph.
+final class EdgeListReader {
+    // Binary graph cache, little-endian: magic, version, source size, source mtime, vertices,
+    // edge count, then source/destination/weight of every edge of the forward index
+    private static final int BINARY_MAGIC = 0x4E5A4731;
+    private static final int BINARY_VERSION = 1;
+    private static final int BINARY_HEADER_BYTES = 32;
+
+    private EdgeListReader() {
+    }
+
+    static GraphIndex load(String path) throws IOException {
+        Path source = Paths.get(path);
+        Path cache = Paths.get(path + ".bin");
+        long sourceSize = Files.size(source);
+        long sourceModified = Files.getLastModifiedTime(source).toMillis();
+
+        if (Files.isRegularFile(cache)) {
+            GraphIndex cached = readBinary(cache, sourceSize, sourceModified);
+            if (cached != null) {
+                return cached;
+            }
+        }
+
+        GraphIndex index = parse(Files.readAllBytes(source));
+        try (BinaryWriter writer = new BinaryWriter(path, sourceSize, sourceModified)) {
+            for (int v = 0; v < index.vertices; v++) {
+                for (int k = index.outOffsets[v]; k < index.outOffsets[v + 1]; k++) {
+                    writer.add(v, index.outTargets[k], index.outWeights[k]);
+                }
+            }
+            writer.finish();
+        } catch (IOException e) {
+            System.err.println("Cannot write graph cache " + cache + ": " + e.getMessage());
+        }
+        return index;
+    }
+
+    // Every line holds one edge or nothing but comments, whitespace and punctuation; identifiers
+    // may only precede the numbers. Anything else, such as a decimal weight, a missing or extra
+    // number or a stray word, is rejected with its line number.
+    static GraphIndex parse(byte[] data) {
+        int[] sources = new int[16];
+        int[] destinations = new int[16];
+        int[] weights = new int[16];
+        int edges = 0;
+
+        int[] numbers = new int[3];
+        int count = 0;
+        int line = 1;
+        int i = 0;
+        while (i <= data.length) {
+            byte b = i < data.length ? data[i] : (byte) '\n';
+            if (b == '\n') {
+                if (count == 3) {
+                    if (numbers[0] < 0 || numbers[1] < 0) {
+                        throw new IllegalStateException("Negative node number in line: " + line);
+                    }
+                    if (edges == sources.length) {
+                        sources = Arrays.copyOf(sources, edges * 2);
+                        destinations = Arrays.copyOf(destinations, edges * 2);
+                        weights = Arrays.copyOf(weights, edges * 2);
+                    }
+                    sources[edges] = numbers[0];
+                    destinations[edges] = numbers[1];
+                    weights[edges] = numbers[2];
+                    edges++;
+                } else if (count != 0) {
+                    throw new IllegalStateException("Expected source, destination and weight but found " + count + " numbers in line: " + line);
+                }
+                count = 0;
+                line++;
+                i++;
+            } else if (b == '#' || (b == '/' && i + 1 < data.length && data[i + 1] == '/')) {
+                // Skip the rest of the line
+                while (i < data.length && data[i] != '\n') {
+                    i++;
+                }
+            } else if (isDigit(b) || (b == '-' && i + 1 < data.length && isDigit(data[i + 1]))) {
+                boolean negative = b == '-';
+                if (negative) {
+                    i++;
+                }
+                long value = 0;
+                while (i < data.length && isDigit(data[i])) {
+                    value = value * 10 + (data[i] - '0');
+                    if (value > Integer.MAX_VALUE) {
+                        throw new IllegalStateException("Number out of range in line: " + line);
+                    }
+                    i++;
+                }
+                if (i < data.length && (data[i] == '.' || Character.isLetter(data[i]) || data[i] == '_')) {
+                    throw new IllegalStateException("Expected whole numbers in line: " + line);
+                }
+                if (count == 3) {
+                    throw new IllegalStateException("Expected source, destination and weight but found more numbers in line: " + line);
+                }
+                numbers[count++] = (int) (negative ? -value : value);
+            } else if (Character.isLetter(b) || b == '_' || b < 0) {
+                // Identifiers like g or addEdge may contain digits that are not part of an edge; bytes
+                // above ASCII are taken as letters of UTF-8 names
+                if (count > 0) {
+                    throw new IllegalStateException("Unexpected text after the numbers in line: " + line);
+                }
+                while (i < data.length && (Character.isLetterOrDigit(data[i]) || data[i] == '_' || data[i] < 0)) {
+                    i++;
+                }
+            } else if (Character.isWhitespace(b) || b == '(' || b == ')' || b == ',' || b == ';' || b == '.') {
+                i++;
+            } else {
+                throw new IllegalStateException("Unexpected character '" + (char) b + "' in line: " + line);
+            }
+        }
+        return GraphIndex.ofEdges(sources, destinations, weights, edges);
+    }
+
+    private static boolean isDigit(byte b) {
+        return b >= '0' && b <= '9';
+    }
+
+    // Writes the binary copy of the text file at path one edge at a time. The header goes in last,
+    // by finish; a writer closed without it leaves a file that load ignores.
+    static final class BinaryWriter implements Closeable {
+        private final FileChannel channel;
+        private final ByteBuffer buffer = ByteBuffer.allocate(1 << 16).order(ByteOrder.LITTLE_ENDIAN);
+        private final long sourceSize;
+        private final long sourceModified;
+        private int edges;
+        private int highest = -1;
+
+        // The copy of the text file as it is now
+        static BinaryWriter of(String path) throws IOException {
+            Path source = Paths.get(path);
+            return new BinaryWriter(path, Files.size(source), Files.getLastModifiedTime(source).toMillis());
+        }
+
+        // The copy of the text file as it was with sourceSize bytes, last modified at sourceModified
+        BinaryWriter(String path, long sourceSize, long sourceModified) throws IOException {
+            this.sourceSize = sourceSize;
+            this.sourceModified = sourceModified;
+            channel = FileChannel.open(Paths.get(path + ".bin"), StandardOpenOption.CREATE,
+                    StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE);
+            buffer.position(BINARY_HEADER_BYTES);
+        }
+
+        void add(int source, int destination, int weight) throws IOException {
+            if (buffer.remaining() < 12) {
+                flush();
+            }
+            buffer.putInt(source).putInt(destination).putInt(weight);
+            highest = Math.max(highest, Math.max(source, destination));
+            edges++;
+        }
+
+        // The node count is the highest node number plus one, as parse makes it
+        void finish() throws IOException {
+            flush();
+            ByteBuffer header = ByteBuffer.allocate(BINARY_HEADER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+            header.putInt(BINARY_MAGIC).putInt(BINARY_VERSION).putLong(sourceSize).putLong(sourceModified);
+            header.putInt(highest + 1).putInt(edges);
+            header.flip();
+            while (header.hasRemaining()) {
+                channel.write(header, BINARY_HEADER_BYTES - header.remaining());
+            }
+        }
+
+        private void flush() throws IOException {
+            buffer.flip();
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            buffer.clear();
+        }
+
+        @Override
+        public void close() throws IOException {
+            channel.close();
+        }
+    }
+
+    // null if the cache is damaged or was written for another version of the text file
+    private static GraphIndex readBinary(Path cache, long sourceSize, long sourceModified) throws IOException {
+        try (FileChannel channel = FileChannel.open(cache, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size < BINARY_HEADER_BYTES) {
+                return null;
+            }
+            MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            mapped.order(ByteOrder.LITTLE_ENDIAN);
+            if (mapped.getInt() != BINARY_MAGIC || mapped.getInt() != BINARY_VERSION
+                    || mapped.getLong() != sourceSize || mapped.getLong() != sourceModified) {
+                return null;
+            }
+            int vertices = mapped.getInt();
+            int edges = mapped.getInt();
+            if (vertices < 0 || edges < 0 || size != BINARY_HEADER_BYTES + 12L * edges) {
+                return null;
+            }
+
+            int[] triples = new int[3 * edges];
+            mapped.asIntBuffer().get(triples);
+
+            int[] sources = new int[edges];
+            int[] destinations = new int[edges];
+            int[] weights = new int[edges];
+            // The node count must be what parse would make of these edges
+            int highest = -1;
+            for (int e = 0; e < edges; e++) {
+                sources[e] = triples[3 * e];
+                destinations[e] = triples[3 * e + 1];
+                weights[e] = triples[3 * e + 2];
+                if (sources[e] < 0 || sources[e] >= vertices || destinations[e] < 0 || destinations[e] >= vertices) {
+                    return null;
+                }
+                highest = Math.max(highest, Math.max(sources[e], destinations[e]));
+            }
+            if (vertices != highest + 1) {
+                return null;
+            }
+            return new GraphIndex(vertices, sources, destinations, weights, edges);
+        }
+    }
+}
@@ -0,0 +1,309 @@
+package demo;
+
+import java.util.*;
+import java.util.function.BooleanSupplier;
+
+// Exact search for the build order with the highest discounted total weight, i.e. the order
+// calculateTotalWeight scores best. The weight a node contributes only depends on the node
+// and its position, so the future of a partial order only depends on the set of built nodes.
+// Small graphs are solved by a dynamic program over those sets, larger ones by a
+// branch-and-bound that can be stopped by a time budget and then reports its optimality gap.
+// Beyond MAX_SEARCH_VERTICES the search state no longer fits, and only the greedy order the
+// branch-and-bound would start from is returned, with the same kind of bound.
+class ExactSolver {
+    // 2^22 states take about 52 MB of tables
+    static final int MAX_SUBSET_VERTICES = 22;
+    private static final int MAX_MEMO_ENTRIES = 1 << 21;
+    // The search keeps one candidate array per level, V^2 ints in total
+    static final int MAX_SEARCH_VERTICES = 2000;
+
+    static class Solution {
+        final int[] order;
+        final double weight;
+        final double upperBound;
+
+        Solution(int[] order, double weight, double upperBound) {
+            this.order = order;
+            this.weight = weight;
+            this.upperBound = upperBound;
+        }
+
+        boolean isOptimal() {
+            return getGap() <= 1e-9 * Math.max(1.0, Math.abs(weight));
+        }
+
+        // How much better than the returned order the optimum can still be
+        double getGap() {
+            return Math.max(0.0, upperBound - weight);
+        }
+    }
+
+    private final int vertices;
+    private final int[] outOffsets;
+    private final int[] outTargets;
+    private final int[] weights;
+    private final GraphIndex index;
+    // factor[i] is the discount of position i; the first node is not scored. One spare entry
+    // for the full set keeps the subset loop free of bounds checks
+    private final double[] factor;
+    // Nodes sorted by weight, heaviest first
+    private final int[] byWeight;
+
+    // Branch-and-bound state
+    private int[] openCount;
+    private boolean[] built;
+    private int[] current;
+    private int[] incumbent;
+    private double incumbentWeight;
+    private double openBound;
+    private long deadline;
+    private long expansions;
+    private boolean stopped;
+    private Map<Long, Double> memo;
+    private BooleanSupplier stopCondition = () -> false;
+
+    ExactSolver(Graph graph, int[] startNodes) {
+        this(graph.index().withStartNodes(startNodes));
+    }
+
+    // Shares the tables of index, which must have its start nodes attached
+    ExactSolver(GraphIndex index) {
+        this.index = index;
+        vertices = index.vertices;
+        outOffsets = index.outOffsets;
+        outTargets = index.outTargets;
+        weights = index.incomingWeights;
+        factor = index.discountFactors;
+
+        Integer[] sorted = new Integer[vertices];
+        for (int v = 0; v < vertices; v++) {
+            sorted[v] = v;
+        }
+        Arrays.sort(sorted, (a, b) -> weights[a] != weights[b] ? Integer.compare(weights[b], weights[a]) : Integer.compare(a, b));
+        byWeight = new int[vertices];
+        for (int k = 0; k < vertices; k++) {
+            byWeight[k] = sorted[k];
+        }
+    }
+
+    // Lets another thread end the branch-and-bound early, as if its time budget had run out
+    void setStopCondition(BooleanSupplier stopCondition) {
+        this.stopCondition = stopCondition;
+    }
+
+    // Solve exactly when the subset table fits, otherwise run branch-and-bound for at most budgetMillis
+    Solution solve(long budgetMillis) {
+        if (vertices <= MAX_SUBSET_VERTICES) {
+            return solveBySubsets();
+        }
+        if (vertices <= MAX_SEARCH_VERTICES) {
+            return solveByBranchAndBound(budgetMillis);
+        }
+        return solveGreedy();
+    }
+
+    Solution solveBySubsets() {
+        if (vertices > MAX_SUBSET_VERTICES) {
+            throw new IllegalStateException("Subset table needs at most " + MAX_SUBSET_VERTICES + " nodes, graph has " + vertices);
+        }
+
+        int states = 1 << vertices;
+        int[] successors = new int[vertices];
+        int startMask = 0;
+        for (int v = 0; v < vertices; v++) {
+            for (int k = outOffsets[v]; k < outOffsets[v + 1]; k++) {
+                successors[v] |= 1 << outTargets[k];
+            }
+            if (index.isStart(v)) {
+                startMask |= 1 << v;
+            }
+        }
+
+        // open[set] holds every node that may be built once the nodes of set are built
+        int[] open = new int[states];
+        double[] best = new double[states];
+        byte[] lastNode = new byte[states];
+        Arrays.fill(best, Double.NEGATIVE_INFINITY);
+        open[0] = startMask;
+        best[0] = 0.0;
+
+        for (int set = 0; set < states; set++) {
+            if (set != 0) {
+                int lowest = Integer.numberOfTrailingZeros(set);
+                open[set] = open[set & (set - 1)] | successors[lowest];
+            }
+            if (best[set] == Double.NEGATIVE_INFINITY) {
+                continue;
+            }
+
+            double discount = factor[Integer.bitCount(set)];
+            for (int candidates = open[set] & ~set; candidates != 0; candidates &= candidates - 1) {
+                int node = Integer.numberOfTrailingZeros(candidates);
+                int next = set | (1 << node);
+                double value = best[set] + weights[node] * discount;
+                if (value > best[next]) {
+                    best[next] = value;
+                    lastNode[next] = (byte) node;
+                }
+            }
+        }
+
+        int full = states - 1;
+        if (best[full] == Double.NEGATIVE_INFINITY) {
+            throw new IllegalStateException("Not all " + vertices + " nodes are reachable from the start nodes");
+        }
+
+        int[] order = new int[vertices];
+        for (int set = full, position = vertices - 1; set != 0; position--) {
+            int node = lastNode[set];
+            order[position] = node;
+            set &= ~(1 << node);
+        }
+        return new Solution(order, best[full], best[full]);
+    }
+
+    Solution solveByBranchAndBound(long budgetMillis) {
+        openCount = new int[vertices];
+        built = new boolean[vertices];
+        current = new int[vertices];
+        incumbent = null;
+        incumbentWeight = Double.NEGATIVE_INFINITY;
+        openBound = Double.NEGATIVE_INFINITY;
+        deadline = System.nanoTime() + budgetMillis * 1_000_000L;
+        expansions = 0;
+        stopped = false;
+        memo = vertices <= 64 ? new HashMap<>() : null;
+
+        for (int v = 0; v < vertices; v++) {
+            if (index.isStart(v)) {
+                openCount[v]++;
+            }
+        }
+
+        search(0, 0.0, 0L);
+
+        if (incumbent == null) {
+            if (stopped) {
+                throw new IllegalStateException("Time budget ran out before a first build order was found");
+            }
+            throw new IllegalStateException("Not all " + vertices + " nodes are reachable from the start nodes");
+        }
+        double upperBound = stopped ? Math.max(incumbentWeight, openBound) : incumbentWeight;
+        return new Solution(incumbent, incumbentWeight, upperBound);
+    }
+
+    // Build the heaviest buildable node at every step, in O((V + E) log V)
+    Solution solveGreedy() {
+        int[] rank = new int[vertices];
+        for (int k = 0; k < vertices; k++) {
+            rank[byWeight[k]] = k;
+        }
+        boolean[] seen = new boolean[vertices];
+        PriorityQueue<Integer> open = new PriorityQueue<>(Comparator.comparingInt(node -> rank[node]));
+        for (int v = 0; v < vertices; v++) {
+            if (index.isStart(v)) {
+                seen[v] = true;
+                open.add(v);
+            }
+        }
+
+        int[] order = new int[vertices];
+        double weight = 0.0;
+        for (int position = 0; position < vertices; position++) {
+            if (open.isEmpty()) {
+                throw new IllegalStateException("Not all " + vertices + " nodes are reachable from the start nodes");
+            }
+            int node = open.poll();
+            order[position] = node;
+            weight += weights[node] * factor[position];
+            for (int k = outOffsets[node]; k < outOffsets[node + 1]; k++) {
+                if (!seen[outTargets[k]]) {
+                    seen[outTargets[k]] = true;
+                    open.add(outTargets[k]);
+                }
+            }
+        }
+
+        // Heaviest nodes in the earliest scored positions; one node takes the unscored first position
+        double upperBound = 0.0;
+        for (int k = 0; k + 1 < vertices; k++) {
+            upperBound += weights[byWeight[k]] * factor[k + 1];
+        }
+        return new Solution(order, weight, Math.max(weight, upperBound));
+    }
+
+    // Depth-first over feasible extensions, heaviest candidate first, so the first leaf is the
+    // greedy order and becomes the incumbent right away
+    private void search(int position, double value, long builtMask) {
+        if (position == vertices) {
+            if (value > incumbentWeight) {
+                incumbentWeight = value;
+                incumbent = current.clone();
+            }
+            return;
+        }
+
+        if (memo != null) {
+            Double seen = memo.get(builtMask);
+            if (seen != null && seen >= value) {
+                return;
+            }
+            if (seen != null || memo.size() < MAX_MEMO_ENTRIES) {
+                memo.put(builtMask, value);
+            }
+        }
+
+        int[] candidates = new int[vertices];
+        int candidateCount = 0;
+        for (int node : byWeight) {
+            if (!built[node] && openCount[node] > 0) {
+                candidates[candidateCount++] = node;
+            }
+        }
+
+        for (int c = 0; c < candidateCount; c++) {
+            int node = candidates[c];
+            double childValue = value + weights[node] * factor[position];
+            double childBound = childValue + remainingBound(position + 1, node);
+
+            if (stopped) {
+                // Out of time: remember what this unexplored subtree could still be worth
+                openBound = Math.max(openBound, childBound);
+                continue;
+            }
+            if (childBound <= incumbentWeight) {
+                continue;
+            }
+            if ((++expansions & 4095) == 0 && (System.nanoTime() > deadline || stopCondition.getAsBoolean())) {
+                stopped = true;
+                openBound = Math.max(openBound, childBound);
+                continue;
+            }
+
+            built[node] = true;
+            current[position] = node;
+            for (int k = outOffsets[node]; k < outOffsets[node + 1]; k++) {
+                openCount[outTargets[k]]++;
+            }
+
+            search(position + 1, childValue, memo != null ? builtMask | (1L << node) : 0L);
+
+            for (int k = outOffsets[node]; k < outOffsets[node + 1]; k++) {
+                openCount[outTargets[k]]--;
+            }
+            built[node] = false;
+        }
+    }
+
+    // Best case for the unbuilt nodes apart from extra: heaviest nodes in the earliest positions,
+    // ignoring reachability, which can only overestimate
+    private double remainingBound(int position, int extra) {
+        double bound = 0.0;
+        for (int node : byWeight) {
+            if (!built[node] && node != extra) {
+                bound += weights[node] * factor[position++];
+            }
+        }
+        return bound;
+    }
+}
@@ -0,0 +1,330 @@
+package demo;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.SplittableRandom;
+import java.util.function.BooleanSupplier;
+import java.util.stream.IntStream;
+
+// Evolves a population of feasible build orders. Each generation keeps the best individuals
+// unchanged (elitism) and breeds the rest from parents picked by binary tournaments. Breeding
+// uses precedence preservative crossover: the child takes, position by position, the next
+// unused node of a randomly chosen parent, so every node keeps its place relative to the nodes
+// before it in one of the parents. A repair pass then turns that sequence into a feasible order
+// by always building the frontier node that comes first in it, which leaves sequences that are
+// already feasible unchanged, and scores the order in the same pass. Some children are mutated
+// with a random feasible LocalSearch move.
+// Genomes of both generations live in two preallocated int[population * V] arrays, and children
+// are bred in parallel chunks, each with its own scratch arrays and random stream.
+class GeneticOptimiser {
+    static final int CHUNK = 256;
+
+    private final GraphIndex index;
+    private final RandomSampler sampler;
+    private final int vertices;
+    private final int[] outOffsets;
+    private final int[] outTargets;
+    private final int[] startNodes;
+    private final int[] weights;
+    private final double[] factor;
+    private final int populationSize;
+    private final long seed;
+
+    private int eliteCount;
+    private double mutationRate = 0.3;
+    private BooleanSupplier stopCondition = () -> false;
+
+    private int[] genomes;
+    private int[] nextGenomes;
+    private double[] fitness;
+    private double[] nextFitness;
+    private final Scratch[] scratch;
+
+    // Per chunk: the ranks of the crossed sequence, the repair's frontier heap and a copy of
+    // the child for mutation
+    private final class Scratch {
+        final int[] rank = new int[vertices];
+        final int[] used = new int[vertices];
+        final int[] heap = new int[vertices];
+        final int[] child = new int[vertices];
+        int stamp;
+        final LocalSearch mutation = new LocalSearch(index);
+    }
+
+    GeneticOptimiser(Graph graph, int[] startNodes, int populationSize, long seed) {
+        this(graph.index().withStartNodes(startNodes), populationSize, seed);
+    }
+
+    // Shares the tables of index, which must have its start nodes attached
+    GeneticOptimiser(GraphIndex index, int populationSize, long seed) {
+        if (populationSize < 2) {
+            throw new IllegalArgumentException("Population needs at least 2 individuals, got " + populationSize);
+        }
+        this.index = index;
+        sampler = new RandomSampler(index);
+        startNodes = index.startNodes;
+        this.populationSize = populationSize;
+        this.seed = seed;
+        vertices = index.vertices;
+        outOffsets = index.outOffsets;
+        outTargets = index.outTargets;
+        weights = index.incomingWeights;
+        factor = index.discountFactors;
+        eliteCount = Math.max(1, populationSize / 50);
+
+        long genes = (long) populationSize * vertices;
+        if (genes > Integer.MAX_VALUE - 8) {
+            throw new IllegalArgumentException("A population of " + populationSize + " orders of " + vertices + " nodes does not fit into an array");
+        }
+        genomes = new int[(int) genes];
+        nextGenomes = new int[(int) genes];
+        fitness = new double[populationSize];
+        nextFitness = new double[populationSize];
+        scratch = new Scratch[(populationSize + CHUNK - 1) / CHUNK];
+    }
+
+    void setEliteCount(int eliteCount) {
+        this.eliteCount = Math.max(0, Math.min(eliteCount, populationSize));
+    }
+
+    void setMutationRate(double mutationRate) {
+        this.mutationRate = mutationRate;
+    }
+
+    // Lets another thread end the evolution after the current generation
+    void setStopCondition(BooleanSupplier stopCondition) {
+        this.stopCondition = stopCondition;
+    }
+
+    // Evolve for at most budgetMillis or maxGenerations, then offer the final population to
+    // store and return the best weight. The initial population is the greedy order plus random
+    // orders from the sampler.
+    double run(long budgetMillis, int maxGenerations, BuildOrderStore store) {
+        long deadline = System.nanoTime() + budgetMillis * 1_000_000L;
+        SplittableRandom master = new SplittableRandom(seed);
+
+        int[] greedy = new ExactSolver(index).solveGreedy().order;
+        System.arraycopy(greedy, 0, genomes, 0, vertices);
+        fitness[0] = weight(genomes, 0);
+        forEachChunk(1, master, (chunk, from, to, random) -> {
+            int[] order = new int[vertices];
+            for (int c = from; c < to; c++) {
+                sampler.draw(startNodes, random, order, Double.NEGATIVE_INFINITY);
+                System.arraycopy(order, 0, genomes, c * vertices, vertices);
+                fitness[c] = weight(genomes, c * vertices);
+            }
+        });
+
+        Integer[] ranking = new Integer[populationSize];
+        for (int generation = 0; generation < maxGenerations && System.nanoTime() < deadline && !stopCondition.getAsBoolean(); generation++) {
+            for (int c = 0; c < populationSize; c++) {
+                ranking[c] = c;
+            }
+            Arrays.sort(ranking, (a, b) -> Double.compare(fitness[b], fitness[a]));
+            for (int e = 0; e < eliteCount; e++) {
+                System.arraycopy(genomes, ranking[e] * vertices, nextGenomes, e * vertices, vertices);
+                nextFitness[e] = fitness[ranking[e]];
+            }
+
+            forEachChunk(eliteCount, master, (chunk, from, to, random) -> {
+                Scratch s = scratch(chunk);
+                for (int c = from; c < to; c++) {
+                    int a = tournament(random);
+                    int b = tournament(random);
+                    nextFitness[c] = breed(s, random, a * vertices, b * vertices, c * vertices);
+                    if (random.nextDouble() < mutationRate) {
+                        System.arraycopy(nextGenomes, c * vertices, s.child, 0, vertices);
+                        nextFitness[c] += s.mutation.mutate(s.child, random);
+                        System.arraycopy(s.child, 0, nextGenomes, c * vertices, vertices);
+                    }
+                }
+            });
+
+            int[] genomesSwap = genomes;
+            genomes = nextGenomes;
+            nextGenomes = genomesSwap;
+            double[] fitnessSwap = fitness;
+            fitness = nextFitness;
+            nextFitness = fitnessSwap;
+        }
+
+        double best = Double.NEGATIVE_INFINITY;
+        int[] order = new int[vertices];
+        for (int c = 0; c < populationSize; c++) {
+            System.arraycopy(genomes, c * vertices, order, 0, vertices);
+            // Recompute instead of trusting the sums of mutation deltas
+            double weight = weight(genomes, c * vertices);
+            store.offer(order, weight);
+            best = Math.max(best, weight);
+        }
+        return best;
+    }
+
+    private interface ChunkTask {
+        void run(int chunk, int from, int to, SplittableRandom random);
+    }
+
+    // Run task over [from, populationSize) in chunks of CHUNK individuals, in parallel. Every
+    // chunk gets its own stream split off master, so the result only depends on the seed.
+    private void forEachChunk(int from, SplittableRandom master, ChunkTask task) {
+        int chunks = (populationSize - from + CHUNK - 1) / CHUNK;
+        SplittableRandom[] streams = new SplittableRandom[chunks];
+        for (int chunk = 0; chunk < chunks; chunk++) {
+            streams[chunk] = master.split();
+        }
+        IntStream.range(0, chunks).parallel().forEach(chunk -> {
+            int start = from + chunk * CHUNK;
+            task.run(chunk, start, Math.min(populationSize, start + CHUNK), streams[chunk]);
+        });
+    }
+
+    private Scratch scratch(int chunk) {
+        Scratch s = scratch[chunk];
+        if (s == null) {
+            // Every chunk index is only used by one thread at a time
+            s = new Scratch();
+            scratch[chunk] = s;
+        }
+        return s;
+    }
+
+    private int tournament(SplittableRandom random) {
+        int a = random.nextInt(populationSize);
+        int b = random.nextInt(populationSize);
+        return fitness[a] >= fitness[b] ? a : b;
+    }
+
+    // Cross the parents at offsets a and b of genomes into the child at offset c of
+    // nextGenomes, repair it and return its weight
+    private double breed(Scratch s, SplittableRandom random, int a, int b, int c) {
+        int stamp = ++s.stamp;
+        int[] used = s.used;
+        int ia = 0;
+        int ib = 0;
+        for (int k = 0; k < vertices; k++) {
+            int node;
+            if (random.nextBoolean()) {
+                while (used[genomes[a + ia]] == stamp) {
+                    ia++;
+                }
+                node = genomes[a + ia];
+            } else {
+                while (used[genomes[b + ib]] == stamp) {
+                    ib++;
+                }
+                node = genomes[b + ib];
+            }
+            used[node] = stamp;
+            s.rank[node] = k;
+        }
+        return repair(s, c);
+    }
+
+    // Build the frontier node with the lowest rank at every step
+    private double repair(Scratch s, int c) {
+        int stamp = ++s.stamp;
+        int[] seen = s.used;
+        int[] rank = s.rank;
+        int[] heap = s.heap;
+        int size = 0;
+        for (int startNode : startNodes) {
+            if (seen[startNode] != stamp) {
+                seen[startNode] = stamp;
+                size = push(heap, size, rank, startNode);
+            }
+        }
+
+        double total = 0.0;
+        for (int p = 0; p < vertices; p++) {
+            if (size == 0) {
+                throw new IllegalStateException("Only " + p + " of " + vertices + " nodes are reachable from the start nodes");
+            }
+            int node = heap[0];
+            size = pop(heap, size, rank);
+            nextGenomes[c + p] = node;
+            total += weights[node] * factor[p];
+            for (int k = outOffsets[node]; k < outOffsets[node + 1]; k++) {
+                int next = outTargets[k];
+                if (seen[next] != stamp) {
+                    seen[next] = stamp;
+                    size = push(heap, size, rank, next);
+                }
+            }
+        }
+        return total;
+    }
+
+    private static int push(int[] heap, int size, int[] rank, int node) {
+        int i = size;
+        while (i > 0) {
+            int parent = (i - 1) >>> 1;
+            if (rank[heap[parent]] <= rank[node]) {
+                break;
+            }
+            heap[i] = heap[parent];
+            i = parent;
+        }
+        heap[i] = node;
+        return size + 1;
+    }
+
+    private static int pop(int[] heap, int size, int[] rank) {
+        int last = heap[--size];
+        int i = 0;
+        while (true) {
+            int child = 2 * i + 1;
+            if (child >= size) {
+                break;
+            }
+            if (child + 1 < size && rank[heap[child + 1]] < rank[heap[child]]) {
+                child++;
+            }
+            if (rank[heap[child]] >= rank[last]) {
+                break;
+            }
+            heap[i] = heap[child];
+            i = child;
+        }
+        if (size > 0) {
+            heap[i] = last;
+        }
+        return size;
+    }
+
+    private double weight(int[] genes, int offset) {
+        double total = 0.0;
+        for (int p = 1; p < vertices; p++) {
+            total += weights[genes[offset + p]] * factor[p];
+        }
+        return total;
+    }
+
+    // Arguments: workbook [population] [budget ms] [seed] [output file]
+    // Evolves build orders for the workbook's graph and writes the best of them like planWorkbook
+    public static void main(String[] args) throws IOException {
+        if (args.length < 1) {
+            System.err.println("Usage: GeneticOptimiser workbook.xlsx [population] [budget ms] [seed] [output file]");
+            System.exit(1);
+        }
+        File file = new File(args[0]);
+        int population = args.length > 1 ? Integer.parseInt(args[1]) : 10000;
+        long budgetMillis = args.length > 2 ? Long.parseLong(args[2]) : 10000;
+        long seed = args.length > 3 ? Long.parseLong(args[3]) : System.nanoTime();
+        String output = args.length > 4 ? args[4] : new File(file.getAbsoluteFile().getParentFile(), "build_orders.xlsx").getPath();
+
+        Graph g = new Graph();
+        int[] startNodes = g.toIndices(GraphWorkbookReader.read(file, g::addEdge));
+        BuildOrderStore store = new BuildOrderStore(1000);
+        double best = new GeneticOptimiser(g, startNodes, population, seed).run(budgetMillis, Integer.MAX_VALUE, store);
+        System.out.println("Seed: " + seed);
+        System.out.printf("Best order: %.2f, %d distinct orders in the final population%n", best, store.distinctOrders());
+
+        try (BuildOrderWriter writer = BuildOrderWriter.open(output, g.nodeNames())) {
+            for (BuildOrderStore.Entry entry : store.bestOrders()) {
+                writer.write(entry.order, entry.weight);
+            }
+        }
+        System.out.println("Build orders with weights have been written to: " + output);
+    }
+}
@@ -0,0 +1,442 @@
+package demo;
+
+import javax.swing.*;
+import java.io.*;
+import java.util.*;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.random.RandomGenerator;
+
+class Graph {
+    private final NodeDictionary nodes;
+    private int vertices;
+    final static int INF = -99999;
+    final static double DISCOUNT_RATE = 0.05;
+    private final Random random;
+
+    // Edges in the order addEdge received them, compressed into the sparse index on first use
+    private int[] edgeSources = new int[16];
+    private int[] edgeDestinations = new int[16];
+    private int[] edgeWeights = new int[16];
+    private int edgeCount;
+    private boolean indexStale = true;
+    // Both ends of every edge added, removed or reweighted since the last takeChanges
+    private final BitSet changedNodes = new BitSet();
+    // Weights written since the index was last built, once there is one; edits look here before
+    // the index, so that they leave rebuilding it to the next reader
+    private final Map<Long, Integer> pendingWeights = new HashMap<>();
+
+    // The compressed form of the edges, rebuilt when edges were added since
+    private GraphIndex index;
+    private RandomSampler sampler;
+
+    public Graph(int vertices) {
+        this.vertices = vertices;
+        nodes = new NodeDictionary();
+        random = new Random();
+    }
+
+    // Graph that grows with the node names passed to addEdge, for readers that stream the edges
+    public Graph() {
+        this(0);
+    }
+
+    public void addEdge(String source, String destination, int weight) {
+        int sourceIndex = nodes.intern(source);
+        int destIndex = nodes.intern(destination);
+        addEdge(sourceIndex, destIndex, weight);
+    }
+
+    // Remove the edge from source to destination; false if there is none
+    public boolean removeEdge(String source, String destination) {
+        int sourceIndex = nodes.indexOf(source);
+        int destIndex = nodes.indexOf(destination);
+        if (sourceIndex == -1 || destIndex == -1 || currentWeight(sourceIndex, destIndex) == 0) {
+            return false;
+        }
+        // The last occurrence of an edge wins, and weight 0 counts as no edge
+        addEdge(sourceIndex, destIndex, 0);
+        return true;
+    }
+
+    // Change the weight of the edge from source to destination, which must exist
+    public void updateWeight(String source, String destination, int weight) {
+        int sourceIndex = nodes.indexOf(source);
+        int destIndex = nodes.indexOf(destination);
+        if (sourceIndex == -1 || destIndex == -1 || currentWeight(sourceIndex, destIndex) == 0) {
+            throw new IllegalArgumentException("No edge from " + source + " to " + destination);
+        }
+        addEdge(sourceIndex, destIndex, weight);
+    }
+
+    // Weight of the edge as of the last edit, 0 if there is none. Only builds the index if it was
+    // never built; after that, edits since the last build are found in pendingWeights.
+    private int currentWeight(int source, int destination) {
+        if (index == null) {
+            buildIndex();
+        }
+        Integer pending = pendingWeights.get((long) source << 32 | destination);
+        if (pending != null) {
+            return pending == INF ? 0 : pending;
+        }
+        return source < index.vertices && destination < index.vertices ? index.edgeWeight(source, destination) : 0;
+    }
+
+    // The nodes whose incoming or outgoing edges changed since the last call, for IncrementalPlanner
+    int[] takeChanges() {
+        int[] changed = changedNodes.stream().toArray();
+        changedNodes.clear();
+        return changed;
+    }
+
+    private void addEdge(int source, int destination, int weight) {
+        if (edgeCount == edgeSources.length) {
+            int capacity = edgeCount * 2;
+            edgeSources = Arrays.copyOf(edgeSources, capacity);
+            edgeDestinations = Arrays.copyOf(edgeDestinations, capacity);
+            edgeWeights = Arrays.copyOf(edgeWeights, capacity);
+        }
+        edgeSources[edgeCount] = source;
+        edgeDestinations[edgeCount] = destination;
+        edgeWeights[edgeCount] = weight;
+        edgeCount++;
+        indexStale = true;
+        if (index != null) {
+            pendingWeights.put((long) source << 32 | destination, weight);
+        }
+        changedNodes.set(source);
+        changedNodes.set(destination);
+    }
+
+    // Compress the collected edges into a GraphIndex, see there for the rules
+    private void buildIndex() {
+        if (!indexStale) {
+            return;
+        }
+        vertices = Math.max(vertices, nodes.size());
+        index = new GraphIndex(vertices, edgeSources, edgeDestinations, edgeWeights, edgeCount);
+        sampler = new RandomSampler(index);
+        indexStale = false;
+        pendingWeights.clear();
+
+        // Removals and updates only ever append, so drop the superseded edges once they dominate
+        if (edgeCount > 2 * index.outTargets.length + 16) {
+            edgeCount = index.outTargets.length;
+            edgeSources = new int[edgeCount + 16];
+            for (int v = 0; v < vertices; v++) {
+                Arrays.fill(edgeSources, index.outOffsets[v], index.outOffsets[v + 1], v);
+            }
+            edgeDestinations = Arrays.copyOf(index.outTargets, edgeCount + 16);
+            edgeWeights = Arrays.copyOf(index.outWeights, edgeCount + 16);
+        }
+    }
+
+    // The index of the edges added so far, without start nodes
+    GraphIndex index() {
+        buildIndex();
+        return index;
+    }
+
+    public List<String> findOptimalPathFromMultipleSources(List<String> startNodes) {
+        buildIndex();
+        String[] names = nodeNames();
+        int[] order = findOptimalPathFromMultipleSources(toIndices(startNodes), random, new int[vertices]);
+        List<String> buildOrder = new ArrayList<>(order.length);
+        for (int node : order) {
+            buildOrder.add(names[node]);
+        }
+        return buildOrder;
+    }
+
+    public int[] findOptimalPathFromMultipleSources(int[] startNodes, RandomGenerator random, int[] buildOrder) {
+        drawBuildOrder(startNodes, random, buildOrder, Double.NEGATIVE_INFINITY);
+        return buildOrder;
+    }
+
+    // See RandomSampler.draw
+    double drawBuildOrder(int[] startNodes, RandomGenerator random, int[] buildOrder, double minWeight) {
+        buildIndex();
+        return sampler.draw(startNodes, random, buildOrder, minWeight);
+    }
+
+    // Draw random build orders on all cores until maxOrders distinct orders have been seen or
+    // budgetMillis have passed, keeping the best of them in store; see RandomSampler.sample
+    public void sampleBuildOrders(int[] starts, long seed, int maxOrders, long budgetMillis, BuildOrderStore store) {
+        sampleBuildOrders(starts, seed, StopPolicy.fixed(maxOrders, budgetMillis), store, null);
+    }
+
+    StopPolicy.Tracker sampleBuildOrders(int[] starts, long seed, StopPolicy policy, BuildOrderStore store, PlanMonitor monitor) {
+        buildIndex();
+        return sampler.sample(starts, seed, policy, store, monitor);
+    }
+
+    int getVertices() {
+        buildIndex();
+        return vertices;
+    }
+
+    public double calculateTotalWeight(List<String> buildOrder) {
+        buildIndex();
+        double totalWeight = 0.0;
+        for (int i = 1; i < buildOrder.size(); i++) {
+            totalWeight += index.incomingWeights[nodes.indexOf(buildOrder.get(i))] * index.discountFactors[i];
+        }
+        return totalWeight;
+    }
+
+    int[] toIndices(List<String> names) {
+        int[] indices = new int[names.size()];
+        int count = 0;
+        for (String node : names) {
+            int index = nodes.indexOf(node);
+            if (index == -1) {
+                System.err.println("Node '" + node + "' not found in the graph.");
+                continue;
+            }
+            indices[count++] = index;
+        }
+        return Arrays.copyOf(indices, count);
+    }
+
+    String[] nodeNames() {
+        buildIndex();
+        return nodes.names(vertices);
+    }
+
+    // Without arguments a drop target for workbooks, with arguments the headless batch mode of BatchPlanner
+    public static void main(String[] args) {
+        if (args.length > 0) {
+            System.exit(BatchPlanner.run(args));
+        }
+
+        SwingUtilities.invokeLater(PlannerWindow::new);
+    }
+
+    static final long MAX_KEPT_NODES = 20_000_000L;
+    static final int POLISHED_ORDERS = 10;
+
+    // What planning one workbook produced, with the time each phase took
+    static class PlanResult {
+        final File input;
+        final File output;
+        int vertices;
+        double weight;
+        double gap;
+        long readMillis;
+        long solveMillis;
+        long writeMillis;
+
+        PlanResult(File input, File output) {
+            this.input = input;
+            this.output = output;
+        }
+    }
+
+    // Progress of a running planWorkbook, readable from other threads, and the way to end it early
+    static class PlanMonitor {
+        final RunStatistics statistics = new RunStatistics();
+        final LongAdder samples = statistics.samples;
+        volatile String phase = "Waiting";
+        volatile BuildOrderStore store;
+        // Stop searching and write the orders found so far
+        volatile boolean stopRequested;
+        // Stop without writing anything
+        volatile boolean cancelled;
+
+        // Add the statistics of the run to the output
+        volatile boolean writeStatistics;
+        // If not null, every distinct order is also written to this file as soon as it is found
+        volatile File allOrders;
+        private RunStatistics.Phase currentPhase;
+
+        boolean shouldStop() {
+            return stopRequested || cancelled;
+        }
+
+        // End the running phase, if any, and start the next one
+        void startPhase(String name) {
+            finishPhase();
+            phase = name;
+            currentPhase = statistics.phase(name);
+        }
+
+        void finishPhase() {
+            if (currentPhase != null) {
+                currentPhase.close();
+                currentPhase = null;
+            }
+        }
+    }
+
+    // Plan one workbook and write its best build orders to output. Exact search, sampling and the
+    // other strategies of the pipeline get budgetMillis each. parses, if not null, limits how
+    // many workbooks are read at once.
+    static PlanResult planWorkbook(File file, File output, long budgetMillis, Semaphore parses) throws IOException {
+        return planWorkbook(file, output, budgetMillis, parses, new PlanMonitor());
+    }
+
+    // As above, reporting to monitor; throws CancellationException once monitor is cancelled
+    static PlanResult planWorkbook(File file, File output, long budgetMillis, Semaphore parses, PlanMonitor monitor) throws IOException {
+        return planWorkbook(file, output, budgetMillis, StopPolicy.adaptive(budgetMillis), parses, monitor);
+    }
+
+    // As above, sampling until sampling says stop
+    static PlanResult planWorkbook(File file, File output, long budgetMillis, StopPolicy sampling, Semaphore parses, PlanMonitor monitor) throws IOException {
+        return planWorkbook(file, output, budgetMillis, sampling, PlanningCore.parse(PlanningCore.DEFAULT_PIPELINE), null, parses, monitor);
+    }
+
+    // As above, running the strategy groups of pipeline, see PlanningCore. cache, if not null,
+    // answers a workbook or graph planned before without planning it again, or continues from
+    // its orders when the cache is set to resume, and keeps the result for the next time. A
+    // workbook that changed since it was last planned at the same path is replanned
+    // incrementally from the previous orders, see IncrementalPlanner.
+    static PlanResult planWorkbook(File file, File output, long budgetMillis, StopPolicy sampling, List<List<PlanningStrategy>> pipeline,
+                                   PlanCache cache, Semaphore parses, PlanMonitor monitor) throws IOException {
+        PlanResult result = new PlanResult(file, output);
+        long started = System.nanoTime();
+        RunStatistics statistics = monitor.statistics;
+        statistics.setWorkbook(file.getName());
+
+        String fileKey = null;
+        String pathKey = null;
+        PlanCache.Entry cached = null;
+        if (cache != null) {
+            monitor.startPhase("Cache lookup");
+            fileKey = PlanCache.fileKey(file);
+            pathKey = PlanCache.pathKey(file);
+            cached = cache.forFile(fileKey);
+        }
+        String[] names;
+        GraphIndex index;
+        String graphKey = null;
+        if (cached != null) {
+            names = cached.names;
+            index = cached.index;
+            graphKey = cached.key;
+        } else {
+            // One streaming pass over the workbook; it checks the sheet order and feeds the edges straight into the graph
+            Graph g = new Graph();
+            int[] startNodes;
+            if (parses != null) {
+                parses.acquireUninterruptibly();
+            }
+            try {
+                monitor.startPhase("Reading");
+                startNodes = g.toIndices(GraphWorkbookReader.read(file, (source, destination, weight) -> {
+                    checkCancelled(file, monitor);
+                    g.addEdge(source, destination, weight);
+                }));
+            } finally {
+                if (parses != null) {
+                    parses.release();
+                }
+            }
+            names = g.nodeNames();
+            index = g.index().withStartNodes(startNodes);
+            if (cache != null) {
+                // The same graph with the same node names may have been planned from another workbook
+                graphKey = PlanCache.graphKey(index, names);
+                cached = cache.get(graphKey);
+            }
+        }
+        result.vertices = index.vertices;
+        statistics.setVertices(result.vertices);
+        long read = System.nanoTime();
+        result.readMillis = (read - started) / 1_000_000;
+
+        // Keep fewer orders of very large graphs so that they stay within MAX_KEPT_NODES ints
+        int keep = (int) Math.max(1, Math.min(1000, MAX_KEPT_NODES / Math.max(1, result.vertices)));
+        BuildOrderStore store = new BuildOrderStore(keep);
+        monitor.store = store;
+        // Orders go to the log while the strategies find them; it is complete once closed
+        OrderLog log = monitor.allOrders != null
+                ? new OrderLog(BuildOrderWriter.open(monitor.allOrders.getPath(), names), result.vertices) : null;
+        store.setLog(log);
+        try {
+            if (cached != null) {
+                for (BuildOrderStore.Entry entry : cached.orders) {
+                    store.offer(entry.order, entry.weight);
+                }
+                statistics.best(store.bestWeight());
+            }
+
+            if (cached != null && (cached.optimal || !cache.resume()) && store.distinctOrders() > 0) {
+                System.out.printf("Best order for %s from the cache: %.2f (optimality gap %.2f)%n", file.getName(),
+                        store.bestWeight(), Math.max(0.0, cached.upperBound - store.bestWeight()));
+                result.weight = store.bestWeight();
+                result.gap = Math.max(0.0, cached.upperBound - result.weight);
+                cache.alias(fileKey, pathKey, cached.key);
+            } else {
+                // The previous version of the workbook, if it was planned before; an unchanged one was found above
+                double[] averages = cached != null ? cached.averages : null;
+                PlanCache.Entry previous = cache != null && cached == null ? cache.forPath(pathKey) : null;
+                if (previous != null) {
+                    monitor.startPhase("Carrying over");
+                    IncrementalPlanner incremental = new IncrementalPlanner(previous.index, previous.names, index, names);
+                    for (BuildOrderStore.Entry entry : incremental.carryOver(previous.orders)) {
+                        store.offer(entry.order, entry.weight);
+                    }
+                    System.out.printf("%s changed at %d nodes since it was last planned: %d orders rescored, %d repaired, %d dropped%n",
+                            file.getName(), incremental.changedNodes().length, incremental.rescored(), incremental.repaired(), incremental.dropped());
+                    if (store.distinctOrders() > 0) {
+                        averages = incremental.patchAverages(previous.averages);
+                        pipeline = PlanningCore.parse(PlanningCore.INCREMENTAL_PIPELINE);
+                        budgetMillis = budgetMillis / PlanningCore.INCREMENTAL_BUDGET_SHARE;
+                        statistics.best(store.bestWeight());
+                    }
+                }
+
+                long seed = System.nanoTime();
+                System.out.println("Seed for " + file.getName() + ": " + seed);
+                PlanningCore.Context context = new PlanningCore.Context(index, store, budgetMillis, seed, sampling, monitor, file.getName());
+                if (averages != null) {
+                    context.useAverages(averages);
+                }
+                if (cached != null) {
+                    context.bound(cached.upperBound);
+                }
+                PlanningCore.run(pipeline, context);
+                checkCancelled(file, monitor);
+                if (store.distinctOrders() == 0) {
+                    throw new IllegalStateException("No strategy of the pipeline found a build order for " + file.getName());
+                }
+                result.weight = store.bestWeight();
+                result.gap = Math.max(0.0, context.upperBound() - result.weight);
+                if (cache != null) {
+                    cache.put(fileKey, pathKey, new PlanCache.Entry(graphKey, names, index, context.averages(), context.upperBound(),
+                            context.isOptimal(), store.bestOrders()));
+                }
+            }
+        } finally {
+            if (log != null) {
+                log.close();
+            }
+        }
+        long solved = System.nanoTime();
+        result.solveMillis = (solved - read) / 1_000_000;
+
+        monitor.startPhase("Writing");
+        try (BuildOrderWriter writer = BuildOrderWriter.open(output.getPath(), names)) {
+            for (BuildOrderStore.Entry entry : store.bestOrders()) {
+                long rowStarted = System.nanoTime();
+                writer.write(entry.order, entry.weight);
+                statistics.writeRow.record(System.nanoTime() - rowStarted);
+            }
+            // The phase ends before the statistics are added; closing an Excel writer is part of
+            // the write time of the PlanResult only
+            monitor.finishPhase();
+            if (monitor.writeStatistics) {
+                writer.writeStatistics(statistics);
+            }
+        }
+        result.writeMillis = (System.nanoTime() - solved) / 1_000_000;
+        return result;
+    }
+
+    private static void checkCancelled(File file, PlanMonitor monitor) {
+        if (monitor.cancelled) {
+            throw new CancellationException("Planning " + file.getName() + " was cancelled");
+        }
+    }
+}
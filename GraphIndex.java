@@ -0,0 +1,197 @@
+package demo;
+
+import java.util.Arrays;
+
+// The read-only form of a graph every planner works on, built once per input: a forward and a
+// reverse compressed adjacency index, the weight each node adds to an order, the discount of
+// every position and, once start nodes are attached, the start nodes as a list and a bitset.
+// Neighbours are sorted by index so traversal order is the same as a row/column scan of a dense
+// matrix. Nothing here changes after construction, so any number of strategies can share one
+// index across threads; the arrays are handed out directly and must not be written to.
+final class GraphIndex {
+    final int vertices;
+
+    // Forward index: the outgoing edges of v are outTargets/outWeights[outOffsets[v] .. outOffsets[v + 1])
+    final int[] outOffsets;
+    final int[] outTargets;
+    final int[] outWeights;
+
+    // Reverse index: the incoming edges of v are inSources/inWeights[inOffsets[v] .. inOffsets[v + 1])
+    final int[] inOffsets;
+    final int[] inSources;
+    final int[] inWeights;
+
+    // Scoring tables: the weight a node adds to an order and the discount of each position.
+    // The first node of an order is not scored, position i is discounted by (1 + rate)^i
+    final int[] incomingWeights;
+    final double[] discountFactors;
+    final long positiveWeightSum;
+
+    // Empty until withStartNodes
+    final int[] startNodes;
+    final long[] startMask;
+
+    // Compress edges [0, edgeCount) into the index. A repeated edge keeps the weight of its last
+    // occurrence and weights 0 and INF count as no edge.
+    GraphIndex(int vertices, int[] edgeSources, int[] edgeDestinations, int[] edgeWeights, int edgeCount) {
+        this.vertices = vertices;
+
+        int[] order = new int[edgeCount];
+        for (int e = 0; e < edgeCount; e++) {
+            order[e] = e;
+        }
+        order = sortByKey(edgeSources, sortByKey(edgeDestinations, order));
+
+        outOffsets = new int[vertices + 1];
+        int size = 0;
+        for (int k = 0; k < edgeCount; k++) {
+            int e = order[k];
+            if (k + 1 < edgeCount
+                    && edgeSources[order[k + 1]] == edgeSources[e]
+                    && edgeDestinations[order[k + 1]] == edgeDestinations[e]) {
+                continue;
+            }
+            if (edgeWeights[e] == 0 || edgeWeights[e] == Graph.INF) {
+                continue;
+            }
+            order[size++] = e;
+            outOffsets[edgeSources[e] + 1]++;
+        }
+        for (int v = 0; v < vertices; v++) {
+            outOffsets[v + 1] += outOffsets[v];
+        }
+        outTargets = new int[size];
+        outWeights = new int[size];
+        for (int k = 0; k < size; k++) {
+            outTargets[k] = edgeDestinations[order[k]];
+            outWeights[k] = edgeWeights[order[k]];
+        }
+
+        // Walking the forward index row by row keeps the sources of every column sorted
+        inOffsets = new int[vertices + 1];
+        for (int k = 0; k < size; k++) {
+            inOffsets[outTargets[k] + 1]++;
+        }
+        for (int v = 0; v < vertices; v++) {
+            inOffsets[v + 1] += inOffsets[v];
+        }
+        inSources = new int[size];
+        inWeights = new int[size];
+        int[] next = Arrays.copyOf(inOffsets, vertices);
+        for (int v = 0; v < vertices; v++) {
+            for (int k = outOffsets[v]; k < outOffsets[v + 1]; k++) {
+                int slot = next[outTargets[k]]++;
+                inSources[slot] = v;
+                inWeights[slot] = outWeights[k];
+            }
+        }
+
+        // A node is scored with the weight of the edge from its lowest-numbered predecessor
+        incomingWeights = new int[vertices];
+        long positive = 0;
+        for (int v = 0; v < vertices; v++) {
+            incomingWeights[v] = inOffsets[v] < inOffsets[v + 1] ? inWeights[inOffsets[v]] : 0;
+            positive += Math.max(0, incomingWeights[v]);
+        }
+        positiveWeightSum = positive;
+        discountFactors = new double[vertices + 1];
+        for (int i = 1; i <= vertices; i++) {
+            discountFactors[i] = 1 / Math.pow(1 + Graph.DISCOUNT_RATE, i);
+        }
+
+        startNodes = new int[0];
+        startMask = new long[(vertices + 63) >>> 6];
+    }
+
+    private GraphIndex(GraphIndex graph, int[] startNodes) {
+        vertices = graph.vertices;
+        outOffsets = graph.outOffsets;
+        outTargets = graph.outTargets;
+        outWeights = graph.outWeights;
+        inOffsets = graph.inOffsets;
+        inSources = graph.inSources;
+        inWeights = graph.inWeights;
+        incomingWeights = graph.incomingWeights;
+        discountFactors = graph.discountFactors;
+        positiveWeightSum = graph.positiveWeightSum;
+
+        this.startNodes = startNodes.clone();
+        startMask = new long[(vertices + 63) >>> 6];
+        for (int startNode : startNodes) {
+            if (startNode < 0 || startNode >= vertices) {
+                throw new IllegalArgumentException("Start node " + startNode + " is not a node of the graph");
+            }
+            startMask[startNode >>> 6] |= 1L << startNode;
+        }
+    }
+
+    // The index of edges [0, edgeCount) between nodes numbered from 0, with as many nodes as the
+    // highest number needs
+    static GraphIndex ofEdges(int[] edgeSources, int[] edgeDestinations, int[] edgeWeights, int edgeCount) {
+        int vertices = 0;
+        for (int e = 0; e < edgeCount; e++) {
+            vertices = Math.max(vertices, Math.max(edgeSources[e], edgeDestinations[e]) + 1);
+        }
+        return new GraphIndex(vertices, edgeSources, edgeDestinations, edgeWeights, edgeCount);
+    }
+
+    // The index of a forward index as written out from outOffsets, outTargets and outWeights
+    static GraphIndex fromForward(int vertices, int[] outOffsets, int[] outTargets, int[] outWeights) {
+        int[] sources = new int[outTargets.length];
+        for (int v = 0; v < vertices; v++) {
+            Arrays.fill(sources, outOffsets[v], outOffsets[v + 1], v);
+        }
+        return new GraphIndex(vertices, sources, outTargets, outWeights, outTargets.length);
+    }
+
+    // The same graph with these start nodes; shares every array with this index
+    GraphIndex withStartNodes(int[] startNodes) {
+        return new GraphIndex(this, startNodes);
+    }
+
+    // Weight of the edge from source to destination, 0 if there is none
+    int edgeWeight(int source, int destination) {
+        int k = Arrays.binarySearch(outTargets, outOffsets[source], outOffsets[source + 1], destination);
+        return k >= 0 ? outWeights[k] : 0;
+    }
+
+    boolean isStart(int node) {
+        return (startMask[node >>> 6] & (1L << node)) != 0;
+    }
+
+    // Stable counting sort of the edge ids in order by keys[edge]
+    private int[] sortByKey(int[] keys, int[] order) {
+        int[] offsets = new int[vertices + 1];
+        for (int e : order) {
+            offsets[keys[e] + 1]++;
+        }
+        for (int v = 0; v < vertices; v++) {
+            offsets[v + 1] += offsets[v];
+        }
+        int[] sorted = new int[order.length];
+        for (int e : order) {
+            sorted[offsets[keys[e]]++] = e;
+        }
+        return sorted;
+    }
+
+    // Discounted total weight of a complete or partial order
+    double weight(int[] buildOrder) {
+        double total = 0.0;
+        for (int p = 1; p < buildOrder.length; p++) {
+            total += incomingWeights[buildOrder[p]] * discountFactors[p];
+        }
+        return total;
+    }
+
+    // No order can weigh more than the heaviest nodes in the earliest scored positions
+    double upperBound() {
+        int[] sorted = incomingWeights.clone();
+        Arrays.sort(sorted);
+        double bound = 0.0;
+        for (int k = 0; k + 1 < vertices; k++) {
+            bound += Math.max(0, sorted[vertices - 1 - k]) * discountFactors[k + 1];
+        }
+        return bound;
+    }
+}
@@ -0,0 +1,76 @@
+package demo;
+
+import java.util.Arrays;
+import java.util.List;
+
+// The console output of the scripts: the adjacency matrix, the nodes each node makes
+// reachable and a list of build orders. Matrices are only meant for small graphs.
+final class GraphPrinter {
+    private GraphPrinter() {
+    }
+
+    // Dense view of the graph, INF where there is no edge
+    static int[][] toAdjacencyMatrix(GraphIndex index) {
+        int vertices = index.vertices;
+        int[][] matrix = new int[vertices][vertices];
+        for (int i = 0; i < vertices; i++) {
+            Arrays.fill(matrix[i], Graph.INF);
+            matrix[i][i] = 0;
+            for (int k = index.outOffsets[i]; k < index.outOffsets[i + 1]; k++) {
+                matrix[i][index.outTargets[k]] = index.outWeights[k];
+            }
+        }
+        return matrix;
+    }
+
+    // Print matrix with a given name
+    static void printMatrix(int[][] matrix, String matrixName) {
+        int vertices = matrix.length;
+        System.out.println(matrixName + ":");
+
+        // Print column headers
+        System.out.print("      ");
+        for (int i = 0; i < vertices; i++) {
+            System.out.printf("%6d", i);
+        }
+        System.out.println();
+
+        for (int i = 0; i < vertices; ++i) {
+            // Print row header
+            System.out.printf("%6d ", i);
+
+            for (int j = 0; j < vertices; ++j) {
+                if (matrix[i][j] == Graph.INF)
+                    System.out.print(" INF ");
+                else
+                    System.out.printf("%6d", matrix[i][j]);
+            }
+            System.out.println();
+        }
+    }
+
+    static void printReachable(GraphIndex index) {
+        // Print reachable points from each vertex with weights
+        for (int i = 0; i < index.vertices; i++) {
+            String msg = "";
+            for (int k = index.outOffsets[i]; k < index.outOffsets[i + 1]; k++) {
+                if (!msg.isEmpty()) {
+                    msg += ", ";
+                }
+                msg += index.outTargets[k] + " (weight: " + index.outWeights[k] + ")";
+            }
+            System.out.println(i + "--> [" + msg + "]");
+        }
+    }
+
+    static void printBuildOrders(List<BuildOrderStore.Entry> orders) {
+        System.out.println("All Build Orders:");
+        int count = 1;
+        for (BuildOrderStore.Entry entry : orders) {
+            String buildOrder = Arrays.toString(entry.order);
+            String totalWeightRounded = String.format("%.2f", entry.weight);
+            System.out.println(count + ": " + buildOrder + " (Total Weight: " + totalWeightRounded + ")");
+            count++;
+        }
+    }
+}
@@ -0,0 +1,238 @@
+package demo;
+
+import org.apache.poi.openxml4j.exceptions.OpenXML4JException;
+import org.apache.poi.openxml4j.opc.OPCPackage;
+import org.apache.poi.openxml4j.opc.PackageAccess;
+import org.apache.poi.util.XMLHelper;
+import org.apache.poi.xssf.eventusermodel.ReadOnlySharedStringsTable;
+import org.apache.poi.xssf.eventusermodel.XSSFReader;
+import org.xml.sax.Attributes;
+import org.xml.sax.InputSource;
+import org.xml.sax.SAXException;
+import org.xml.sax.XMLReader;
+import org.xml.sax.helpers.DefaultHandler;
+
+import javax.xml.parsers.ParserConfigurationException;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+// Reads the "Einstellungen" and "Graph" sheets of a planning workbook in one pass over the
+// package with a SAX parser, so memory stays constant no matter how many edge rows there are.
+// Edges are handed to the sink as soon as their row is parsed. Cell rules and error messages
+// are the same as the DOM readers Graph used to have, which WorkbookBenchmark keeps as a
+// baseline.
+class GraphWorkbookReader {
+    interface EdgeSink {
+        void addEdge(String source, String destination, int weight);
+    }
+
+    // Kinds of the first three cells of a row
+    private static final int MISSING = 0;
+    private static final int STRING = 1;
+    private static final int NUMERIC = 2;
+    private static final int BLANK = 3;
+    private static final int OTHER = 4;
+
+    private interface RowHandler {
+        void row(int rowNum, int[] kinds, String[] values);
+    }
+
+    // Streams the edges into sink and returns the start nodes
+    static List<String> read(File file, EdgeSink sink) throws IOException {
+        List<String> startNodes = new ArrayList<>();
+
+        try (OPCPackage pkg = OPCPackage.open(file, PackageAccess.READ)) {
+            XSSFReader reader = new XSSFReader(pkg);
+            ReadOnlySharedStringsTable strings = new ReadOnlySharedStringsTable(pkg);
+            XSSFReader.SheetIterator sheets = (XSSFReader.SheetIterator) reader.getSheetsData();
+
+            int sheetIndex = 0;
+            while (sheets.hasNext() && sheetIndex < 2) {
+                try (InputStream sheet = sheets.next()) {
+                    if (sheetIndex == 0) {
+                        if (!sheets.getSheetName().equals("Einstellungen")) {
+                            throw new IllegalStateException("First sheet is not 'Einstellungen'. Please reorder the sheets.");
+                        }
+                        parse(sheet, strings, (rowNum, kinds, values) -> readStartNode(rowNum, kinds, values, startNodes));
+                    } else {
+                        if (!sheets.getSheetName().equals("Graph")) {
+                            throw new IllegalStateException("Second sheet is not 'Graph'. Please reorder the sheets.");
+                        }
+                        parse(sheet, strings, (rowNum, kinds, values) -> readEdge(rowNum, kinds, values, sink));
+                    }
+                }
+                sheetIndex++;
+            }
+            if (sheetIndex < 2) {
+                throw new IllegalStateException("Workbook needs the sheets 'Einstellungen' and 'Graph'.");
+            }
+        } catch (OpenXML4JException | SAXException | ParserConfigurationException e) {
+            throw new IOException("Cannot read workbook " + file, e);
+        }
+
+        return startNodes;
+    }
+
+    private static void readStartNode(int rowNum, int[] kinds, String[] values, List<String> startNodes) {
+        switch (kinds[0]) {
+            case STRING:
+                startNodes.add(values[0]);
+                break;
+            case NUMERIC:
+                startNodes.add(String.valueOf((int) Double.parseDouble(values[0])));
+                break;
+            case MISSING:
+            case BLANK:
+                break;  // Skip empty rows and blank cells
+            default:
+                throw new IllegalStateException("Unexpected cell type encountered for node cell in row: " + rowNum);
+        }
+    }
+
+    private static void readEdge(int rowNum, int[] kinds, String[] values, EdgeSink sink) {
+        if (rowNum == 0) {
+            return;
+        }
+
+        String source = nodeName(rowNum, kinds[0], values[0], "Source", "source");
+        String destination = nodeName(rowNum, kinds[1], values[1], "Destination", "destination");
+        if (kinds[2] != NUMERIC) {
+            throw new IllegalStateException("Weight should be numeric for row: " + rowNum);
+        }
+        sink.addEdge(source, destination, (int) Double.parseDouble(values[2]));
+    }
+
+    private static String nodeName(int rowNum, int kind, String value, String label, String lowerLabel) {
+        switch (kind) {
+            case STRING:
+                return value;
+            case NUMERIC:
+                return String.valueOf((int) Double.parseDouble(value));
+            case MISSING:
+                throw new IllegalStateException(label + " cell is null for row: " + rowNum);
+            case BLANK:
+                throw new IllegalStateException(label + " cell is blank for row: " + rowNum);
+            default:
+                throw new IllegalStateException("Unexpected cell type encountered for " + lowerLabel + " cell in row: " + rowNum);
+        }
+    }
+
+    private static void parse(InputStream sheet, ReadOnlySharedStringsTable strings, RowHandler rows)
+            throws IOException, SAXException, ParserConfigurationException {
+        XMLReader parser = XMLHelper.newXMLReader();
+        parser.setContentHandler(new SheetHandler(strings, rows));
+        parser.parse(new InputSource(sheet));
+    }
+
+    // Collects the first three cells of every <row> element and reports them when the row ends
+    private static final class SheetHandler extends DefaultHandler {
+        private final ReadOnlySharedStringsTable strings;
+        private final RowHandler rows;
+        private final int[] kinds = new int[3];
+        private final String[] values = new String[3];
+        private final StringBuilder text = new StringBuilder();
+
+        private int rowNum = -1;
+        private int column;
+        private String cellType;
+        private boolean formula;
+        private boolean collecting;
+        private boolean hasValue;
+
+        SheetHandler(ReadOnlySharedStringsTable strings, RowHandler rows) {
+            this.strings = strings;
+            this.rows = rows;
+        }
+
+        @Override
+        public void startElement(String uri, String localName, String qName, Attributes attributes) {
+            switch (localName) {
+                case "row":
+                    String r = attributes.getValue("r");
+                    rowNum = r != null ? Integer.parseInt(r) - 1 : rowNum + 1;
+                    for (int i = 0; i < kinds.length; i++) {
+                        kinds[i] = MISSING;
+                        values[i] = null;
+                    }
+                    column = -1;
+                    break;
+                case "c":
+                    String ref = attributes.getValue("r");
+                    column = ref != null ? columnIndex(ref) : column + 1;
+                    cellType = attributes.getValue("t");
+                    formula = false;
+                    hasValue = false;
+                    text.setLength(0);
+                    break;
+                case "f":
+                    formula = true;
+                    break;
+                case "v":
+                case "t":
+                    collecting = true;
+                    hasValue = true;
+                    break;
+                default:
+                    break;
+            }
+        }
+
+        @Override
+        public void characters(char[] ch, int start, int length) {
+            if (collecting) {
+                text.append(ch, start, length);
+            }
+        }
+
+        @Override
+        public void endElement(String uri, String localName, String qName) {
+            switch (localName) {
+                case "v":
+                case "t":
+                    collecting = false;
+                    break;
+                case "c":
+                    if (column >= 0 && column < kinds.length) {
+                        endCell();
+                    }
+                    break;
+                case "row":
+                    rows.row(rowNum, kinds, values);
+                    break;
+                default:
+                    break;
+            }
+        }
+
+        private void endCell() {
+            if (formula) {
+                kinds[column] = OTHER;
+            } else if (!hasValue) {
+                kinds[column] = BLANK;
+            } else if ("s".equals(cellType)) {
+                kinds[column] = STRING;
+                values[column] = strings.getItemAt(Integer.parseInt(text.toString().trim())).getString();
+            } else if ("inlineStr".equals(cellType) || "str".equals(cellType)) {
+                kinds[column] = STRING;
+                values[column] = text.toString();
+            } else if (cellType == null || "n".equals(cellType)) {
+                kinds[column] = NUMERIC;
+                values[column] = text.toString().trim();
+            } else {
+                kinds[column] = OTHER;
+            }
+        }
+
+        // "AB12" -> 27
+        private static int columnIndex(String ref) {
+            int index = 0;
+            for (int i = 0; i < ref.length() && Character.isLetter(ref.charAt(i)); i++) {
+                index = index * 26 + (ref.charAt(i) - 'A' + 1);
+            }
+            return index - 1;
+        }
+    }
+}
@@ -0,0 +1,353 @@
+package demo;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.*;
+
+// Carries the results of a plan over to a graph that changed a little since, instead of planning
+// from scratch. The changed nodes are those whose incoming or outgoing edges, incoming weight or
+// start flag differ; Graph tracks them as edges are added, removed and reweighted, and two
+// versions of a workbook are compared node by node through their names. Then:
+//  - an order whose nodes all still exist is rescored by the weight changes at the positions of
+//    the changed nodes only, and only the changed nodes are checked for still having a start or
+//    an earlier predecessor
+//  - an order that became infeasible, lost nodes or misses new ones is repaired the way
+//    GeneticOptimiser repairs a child: at every step the frontier node that came first in the
+//    old order is built, new nodes last; an order with unreachable nodes is dropped
+//  - the BeamSearch averages are patched around the changed nodes, see BeamSearch.patchAverages
+// The carried orders then give the planners of a short pipeline a head start.
+class IncrementalPlanner {
+    private final GraphIndex previous;
+    private final GraphIndex index;
+    // Node of index for every node of previous, -1 if it is gone
+    private final int[] previousToCurrent;
+    private final int[] currentToPrevious;
+    private final int[] changed;
+    private final boolean[] isChanged;
+    private int rescored;
+    private int repaired;
+    private int dropped;
+
+    // After edits through the Graph API: nodes keep their numbers, changed comes from Graph.takeChanges
+    IncrementalPlanner(GraphIndex previous, GraphIndex index, int[] changed) {
+        this(previous, index, identity(previous.vertices), changed);
+    }
+
+    // Between two readings of a workbook: nodes are matched by name and compared
+    IncrementalPlanner(GraphIndex previous, String[] previousNames, GraphIndex index, String[] names) {
+        this(previous, index, match(previousNames, names), null);
+    }
+
+    private IncrementalPlanner(GraphIndex previous, GraphIndex index, int[] previousToCurrent, int[] changed) {
+        this.previous = previous;
+        this.index = index;
+        this.previousToCurrent = previousToCurrent;
+        currentToPrevious = new int[index.vertices];
+        Arrays.fill(currentToPrevious, -1);
+        for (int old = 0; old < previousToCurrent.length; old++) {
+            if (previousToCurrent[old] != -1) {
+                currentToPrevious[previousToCurrent[old]] = old;
+            }
+        }
+
+        isChanged = new boolean[index.vertices];
+        for (int v = 0; v < index.vertices; v++) {
+            int old = currentToPrevious[v];
+            if (old == -1 || index.isStart(v) != previous.isStart(old)
+                    || index.incomingWeights[v] != previous.incomingWeights[old]) {
+                isChanged[v] = true;
+            }
+        }
+        if (changed != null) {
+            for (int v : changed) {
+                if (v < index.vertices) {
+                    isChanged[v] = true;
+                }
+            }
+        } else {
+            for (int v = 0; v < index.vertices; v++) {
+                int old = currentToPrevious[v];
+                if (old != -1 && !isChanged[v]) {
+                    isChanged[v] = !sameEdges(v, old, index.outOffsets, index.outTargets, index.outWeights,
+                                    previous.outOffsets, previous.outTargets, previous.outWeights)
+                            || !sameEdges(v, old, index.inOffsets, index.inSources, index.inWeights,
+                                    previous.inOffsets, previous.inSources, previous.inWeights);
+                }
+            }
+        }
+        int count = 0;
+        for (boolean c : isChanged) {
+            count += c ? 1 : 0;
+        }
+        this.changed = new int[count];
+        for (int v = 0, k = 0; v < index.vertices; v++) {
+            if (isChanged[v]) {
+                this.changed[k++] = v;
+            }
+        }
+    }
+
+    private static int[] identity(int vertices) {
+        int[] map = new int[vertices];
+        for (int v = 0; v < vertices; v++) {
+            map[v] = v;
+        }
+        return map;
+    }
+
+    private static int[] match(String[] previousNames, String[] names) {
+        Map<String, Integer> ids = new HashMap<>();
+        for (int v = 0; v < names.length; v++) {
+            ids.put(names[v], v);
+        }
+        int[] map = new int[previousNames.length];
+        for (int old = 0; old < previousNames.length; old++) {
+            map[old] = ids.getOrDefault(previousNames[old], -1);
+        }
+        return map;
+    }
+
+    // Whether node v of the current and node old of the previous index have the same neighbours with the same weights
+    private boolean sameEdges(int v, int old, int[] offsets, int[] neighbours, int[] weights,
+                              int[] previousOffsets, int[] previousNeighbours, int[] previousWeights) {
+        int degree = offsets[v + 1] - offsets[v];
+        if (previousOffsets[old + 1] - previousOffsets[old] != degree) {
+            return false;
+        }
+        // Neighbours of the previous index in current numbers; renumbering breaks their order
+        long[] before = new long[degree];
+        for (int k = 0; k < degree; k++) {
+            int neighbour = previousToCurrent[previousNeighbours[previousOffsets[old] + k]];
+            if (neighbour == -1) {
+                return false;
+            }
+            before[k] = (long) neighbour << 32 | (previousWeights[previousOffsets[old] + k] & 0xFFFFFFFFL);
+        }
+        Arrays.sort(before);
+        for (int k = 0; k < degree; k++) {
+            long now = (long) neighbours[offsets[v] + k] << 32 | (weights[offsets[v] + k] & 0xFFFFFFFFL);
+            if (now != before[k]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // Nodes of the current index that changed
+    int[] changedNodes() {
+        return changed.clone();
+    }
+
+    // The previous averages in current numbers, patched around the changed nodes
+    double[] patchAverages(double[] previousAverages) {
+        double[] average = new double[index.vertices];
+        for (int v = 0; v < index.vertices; v++) {
+            average[v] = currentToPrevious[v] != -1 ? previousAverages[currentToPrevious[v]] : 0.0;
+        }
+        BeamSearch.patchAverages(index, average, changed);
+        return average;
+    }
+
+    // The previous orders as orders of the current graph with their current weights, best first;
+    // orders that cannot be repaired are left out
+    List<BuildOrderStore.Entry> carryOver(List<BuildOrderStore.Entry> orders) {
+        int vertices = index.vertices;
+        int[] position = new int[vertices];
+        List<BuildOrderStore.Entry> carried = new ArrayList<>(orders.size());
+        for (BuildOrderStore.Entry entry : orders) {
+            int[] order = new int[vertices];
+            int length = 0;
+            for (int old : entry.order) {
+                int v = previousToCurrent[old];
+                if (v != -1) {
+                    order[length++] = v;
+                }
+            }
+
+            if (length == vertices && entry.order.length == vertices) {
+                for (int p = 0; p < vertices; p++) {
+                    position[order[p]] = p;
+                }
+                if (feasibleAtChanges(position)) {
+                    double weight = entry.weight;
+                    for (int v : changed) {
+                        int p = position[v];
+                        if (p > 0) {
+                            weight += (index.incomingWeights[v] - previous.incomingWeights[currentToPrevious[v]]) * index.discountFactors[p];
+                        }
+                    }
+                    carried.add(new BuildOrderStore.Entry(order, weight));
+                    rescored++;
+                    continue;
+                }
+            }
+
+            int[] fixed = repair(order, length);
+            if (fixed == null) {
+                dropped++;
+            } else {
+                carried.add(new BuildOrderStore.Entry(fixed, index.weight(fixed)));
+                repaired++;
+            }
+        }
+        carried.sort((a, b) -> Double.compare(b.weight, a.weight));
+        return carried;
+    }
+
+    // Only a changed node can have lost its start flag or its last earlier predecessor
+    private boolean feasibleAtChanges(int[] position) {
+        for (int v : changed) {
+            if (index.isStart(v)) {
+                continue;
+            }
+            boolean reachable = false;
+            for (int k = index.inOffsets[v]; k < index.inOffsets[v + 1] && !reachable; k++) {
+                reachable = position[index.inSources[k]] < position[v];
+            }
+            if (!reachable) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // A feasible order close to the first length nodes of sequence, null if not every node can be reached
+    private int[] repair(int[] sequence, int length) {
+        int vertices = index.vertices;
+        int[] rank = new int[vertices];
+        Arrays.fill(rank, Integer.MAX_VALUE);
+        for (int p = 0; p < length; p++) {
+            rank[sequence[p]] = p;
+        }
+        PriorityQueue<Integer> frontier = new PriorityQueue<>(
+                (a, b) -> rank[a] != rank[b] ? Integer.compare(rank[a], rank[b]) : Integer.compare(a, b));
+        boolean[] seen = new boolean[vertices];
+        for (int startNode : index.startNodes) {
+            if (!seen[startNode]) {
+                seen[startNode] = true;
+                frontier.add(startNode);
+            }
+        }
+        int[] order = new int[vertices];
+        for (int p = 0; p < vertices; p++) {
+            if (frontier.isEmpty()) {
+                return null;
+            }
+            int node = frontier.poll();
+            order[p] = node;
+            for (int k = index.outOffsets[node]; k < index.outOffsets[node + 1]; k++) {
+                int next = index.outTargets[k];
+                if (!seen[next]) {
+                    seen[next] = true;
+                    frontier.add(next);
+                }
+            }
+        }
+        return order;
+    }
+
+    int rescored() {
+        return rescored;
+    }
+
+    int repaired() {
+        return repaired;
+    }
+
+    int dropped() {
+        return dropped;
+    }
+
+    // Apply the edits of lines to g, one per line: "add source destination weight", "remove
+    // source destination" or "weight source destination weight"; # starts a comment. Returns
+    // the number of edits.
+    static int applyEdits(Graph g, List<String> lines) {
+        int edits = 0;
+        for (int i = 0; i < lines.size(); i++) {
+            String line = lines.get(i);
+            int comment = line.indexOf('#');
+            String[] words = (comment >= 0 ? line.substring(0, comment) : line).trim().split("\\s+");
+            if (words[0].isEmpty()) {
+                continue;
+            }
+            try {
+                if (words[0].equals("add") && words.length == 4) {
+                    g.addEdge(words[1], words[2], Integer.parseInt(words[3]));
+                } else if (words[0].equals("remove") && words.length == 3) {
+                    if (!g.removeEdge(words[1], words[2])) {
+                        throw new IllegalStateException("No edge from " + words[1] + " to " + words[2] + " in line: " + (i + 1));
+                    }
+                } else if (words[0].equals("weight") && words.length == 4) {
+                    g.updateWeight(words[1], words[2], Integer.parseInt(words[3]));
+                } else {
+                    throw new IllegalStateException("Expected add, remove or weight with its nodes in line: " + (i + 1));
+                }
+            } catch (IllegalArgumentException e) {
+                throw new IllegalStateException(e.getMessage() + " in line: " + (i + 1), e);
+            }
+            edits++;
+        }
+        return edits;
+    }
+
+    // Arguments: workbook edits [budget ms] [output file]
+    // Plans the workbook, applies the edits file through the Graph API, see applyEdits, and plans
+    // the edited graph on from the orders carried over instead of from scratch. Writes the best
+    // orders like planWorkbook.
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2) {
+            System.err.println("Usage: IncrementalPlanner workbook.xlsx edits.txt [budget ms] [output file]");
+            System.exit(1);
+        }
+        File file = new File(args[0]);
+        long budgetMillis = args.length > 2 ? Long.parseLong(args[2]) : 10000;
+        String output = args.length > 3 ? args[3] : new File(file.getAbsoluteFile().getParentFile(), "build_orders.xlsx").getPath();
+
+        Graph g = new Graph();
+        int[] startNodes = g.toIndices(GraphWorkbookReader.read(file, g::addEdge));
+        GraphIndex before = g.index().withStartNodes(startNodes);
+        g.takeChanges();
+        BuildOrderStore planned = new BuildOrderStore(1000);
+        PlanningCore.Context first = new PlanningCore.Context(before, planned, budgetMillis, System.nanoTime(),
+                StopPolicy.adaptive(budgetMillis), new Graph.PlanMonitor(), file.getName());
+        PlanningCore.run(PlanningCore.parse(PlanningCore.DEFAULT_PIPELINE), first);
+        System.out.printf("Best order before the edits: %.2f%n", planned.bestWeight());
+
+        // The edits only collect; the index is rebuilt once, here
+        int edits = applyEdits(g, Files.readAllLines(Paths.get(args[1]), StandardCharsets.UTF_8));
+        GraphIndex after = g.index().withStartNodes(startNodes);
+        IncrementalPlanner incremental = new IncrementalPlanner(before, after, g.takeChanges());
+        BuildOrderStore store = new BuildOrderStore(1000);
+        for (BuildOrderStore.Entry entry : incremental.carryOver(planned.bestOrders())) {
+            store.offer(entry.order, entry.weight);
+        }
+        System.out.printf("%d edits changed %d nodes: %d orders rescored, %d repaired, %d dropped%n", edits,
+                incremental.changedNodes().length, incremental.rescored(), incremental.repaired(), incremental.dropped());
+
+        String pipeline = PlanningCore.DEFAULT_PIPELINE;
+        long replanMillis = budgetMillis;
+        double[] averages = null;
+        if (store.distinctOrders() > 0) {
+            pipeline = PlanningCore.INCREMENTAL_PIPELINE;
+            replanMillis = budgetMillis / PlanningCore.INCREMENTAL_BUDGET_SHARE;
+            averages = incremental.patchAverages(first.averages());
+        }
+        PlanningCore.Context second = new PlanningCore.Context(after, store, replanMillis, System.nanoTime(),
+                StopPolicy.adaptive(replanMillis), new Graph.PlanMonitor(), file.getName());
+        if (averages != null) {
+            second.useAverages(averages);
+        }
+        PlanningCore.run(PlanningCore.parse(pipeline), second);
+        System.out.printf("Best order after the edits: %.2f%n", store.bestWeight());
+
+        try (BuildOrderWriter writer = BuildOrderWriter.open(output, g.nodeNames())) {
+            for (BuildOrderStore.Entry entry : store.bestOrders()) {
+                writer.write(entry.order, entry.weight);
+            }
+        }
+        System.out.println("Build orders with weights have been written to: " + output);
+    }
+}
@@ -0,0 +1,421 @@
+package demo;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.SplittableRandom;
+
+// Improves build orders by moving single nodes: an insert move takes a node out and puts it back
+// earlier or later, shifting the nodes in between by one; a swap move exchanges two nodes.
+// Moves keep the order feasible (every node is a start node or comes after one of its
+// predecessors), which only needs checking for the moved node and the nodes it passes. The
+// change in weight only depends on the positions in between, so a move is scored in
+// O(span) instead of rescoring the order, and scanning all targets of one node outward from
+// its position costs O(1) per target. Three strategies use these moves: hill climbing
+// (best insert of each node until nothing improves), simulated annealing (random inserts and
+// swaps) and tabu search (best non-tabu insert, also when it makes the order worse).
+class LocalSearch {
+    enum Method { HILL_CLIMBING, SIMULATED_ANNEALING, TABU }
+
+    // Targets further away than this from a node's position are not tried
+    static final int MAX_SHIFT = 256;
+    private static final double EPSILON = 1e-9;
+
+    private final int vertices;
+    private final int[] outOffsets;
+    private final int[] outTargets;
+    private final int[] inOffsets;
+    private final int[] inSources;
+    private final int[] weights;
+    private final GraphIndex index;
+    // factor[p] is the discount of position p; the first node is not scored
+    private final double[] factor;
+
+    // State of the order being improved
+    private int[] order;
+    private final int[] position;
+    private final int[] mark;
+    private int stamp;
+
+    LocalSearch(Graph graph, int[] startNodes) {
+        this(graph.index().withStartNodes(startNodes));
+    }
+
+    // Shares the tables of index, which must have its start nodes attached; only the state of
+    // the order being improved is allocated
+    LocalSearch(GraphIndex index) {
+        this.index = index;
+        vertices = index.vertices;
+        outOffsets = index.outOffsets;
+        outTargets = index.outTargets;
+        inOffsets = index.inOffsets;
+        inSources = index.inSources;
+        weights = index.incomingWeights;
+        factor = index.discountFactors;
+        position = new int[vertices];
+        mark = new int[vertices];
+    }
+
+    double weight(int[] buildOrder) {
+        double total = 0.0;
+        for (int p = 1; p < buildOrder.length; p++) {
+            total += weights[buildOrder[p]] * factor[p];
+        }
+        return total;
+    }
+
+    // Improve buildOrder in place for at most budgetMillis and return its new weight
+    double improve(int[] buildOrder, Method method, long budgetMillis, long seed) {
+        if (buildOrder.length != vertices) {
+            throw new IllegalArgumentException("Build order has " + buildOrder.length + " nodes, graph has " + vertices);
+        }
+        long deadline = System.nanoTime() + budgetMillis * 1_000_000L;
+        order = buildOrder;
+        for (int p = 0; p < vertices; p++) {
+            position[order[p]] = p;
+        }
+
+        switch (method) {
+            case HILL_CLIMBING:
+                hillClimb(deadline);
+                break;
+            case SIMULATED_ANNEALING:
+                anneal(deadline, budgetMillis, seed);
+                break;
+            case TABU:
+                tabu(deadline);
+                break;
+        }
+        order = null;
+        return weight(buildOrder);
+    }
+
+    // Apply one random feasible insert or swap to buildOrder and return the change in weight,
+    // 0 if a few tries found no feasible move
+    double mutate(int[] buildOrder, SplittableRandom random) {
+        if (vertices < 2) {
+            return 0.0;
+        }
+        order = buildOrder;
+        for (int p = 0; p < vertices; p++) {
+            position[order[p]] = p;
+        }
+        double applied = 0.0;
+        for (int attempt = 0; attempt < 8; attempt++) {
+            int i = random.nextInt(vertices);
+            int j = randomTarget(random, i);
+            boolean swap = random.nextBoolean();
+            double delta = swap ? swapDelta(i, j) : insertDelta(i, j);
+            if (delta != Double.NEGATIVE_INFINITY) {
+                if (swap) {
+                    swap(i, j);
+                } else {
+                    insert(i, j);
+                }
+                applied = delta;
+                break;
+            }
+        }
+        order = null;
+        return applied;
+    }
+
+    private void hillClimb(long deadline) {
+        int[] move = new int[1];
+        boolean improved = true;
+        while (improved && System.nanoTime() < deadline) {
+            improved = false;
+            for (int i = 0; i < vertices; i++) {
+                double delta = bestInsert(i, move);
+                if (delta > EPSILON) {
+                    insert(i, move[0]);
+                    improved = true;
+                }
+            }
+        }
+    }
+
+    private void tabu(long deadline) {
+        int tenure = Math.max(5, Math.min(vertices / 4, 20));
+        int[] tabuUntil = new int[vertices];
+        int[] best = order.clone();
+        double current = weight(order);
+        double bestWeight = current;
+        int[] move = new int[1];
+
+        for (int iteration = 1; System.nanoTime() < deadline; iteration++) {
+            int chosenFrom = -1;
+            int chosenTo = -1;
+            double chosenDelta = Double.NEGATIVE_INFINITY;
+            for (int i = 0; i < vertices; i++) {
+                double delta = bestInsert(i, move);
+                if (delta == Double.NEGATIVE_INFINITY || delta <= chosenDelta) {
+                    continue;
+                }
+                // A tabu node may still move if that gives a new best order
+                if (tabuUntil[order[i]] < iteration || current + delta > bestWeight + EPSILON) {
+                    chosenFrom = i;
+                    chosenTo = move[0];
+                    chosenDelta = delta;
+                }
+            }
+            if (chosenFrom == -1) {
+                break;
+            }
+
+            tabuUntil[order[chosenFrom]] = iteration + tenure;
+            insert(chosenFrom, chosenTo);
+            current += chosenDelta;
+            if (current > bestWeight + EPSILON) {
+                bestWeight = current;
+                System.arraycopy(order, 0, best, 0, vertices);
+            }
+        }
+
+        System.arraycopy(best, 0, order, 0, vertices);
+        for (int p = 0; p < vertices; p++) {
+            position[order[p]] = p;
+        }
+    }
+
+    private void anneal(long deadline, long budgetMillis, long seed) {
+        if (vertices < 2) {
+            return;
+        }
+        SplittableRandom random = new SplittableRandom(seed);
+        int[] best = order.clone();
+        double current = weight(order);
+        double bestWeight = current;
+
+        // Start hot enough to accept a typical worsening move with probability 1/e, end a
+        // thousand times colder
+        double sum = 0.0;
+        int count = 0;
+        for (int k = 0; k < 200; k++) {
+            int i = random.nextInt(vertices);
+            int j = randomTarget(random, i);
+            double delta = random.nextBoolean() ? insertDelta(i, j) : swapDelta(i, j);
+            if (delta != Double.NEGATIVE_INFINITY && delta < 0) {
+                sum -= delta;
+                count++;
+            }
+        }
+        double startTemperature = count > 0 ? sum / count : 1.0;
+        double endTemperature = startTemperature / 1000;
+        long start = System.nanoTime();
+        double budgetNanos = Math.max(1, budgetMillis) * 1_000_000.0;
+        double temperature = startTemperature;
+
+        for (long step = 0; ; step++) {
+            if ((step & 255) == 0) {
+                long now = System.nanoTime();
+                if (now >= deadline) {
+                    break;
+                }
+                temperature = startTemperature * Math.pow(endTemperature / startTemperature, (now - start) / budgetNanos);
+            }
+
+            int i = random.nextInt(vertices);
+            int j = randomTarget(random, i);
+            boolean swap = random.nextBoolean();
+            double delta = swap ? swapDelta(i, j) : insertDelta(i, j);
+            if (delta == Double.NEGATIVE_INFINITY) {
+                continue;
+            }
+            if (delta >= 0 || random.nextDouble() < Math.exp(delta / temperature)) {
+                if (swap) {
+                    swap(i, j);
+                } else {
+                    insert(i, j);
+                }
+                current += delta;
+                if (current > bestWeight + EPSILON) {
+                    bestWeight = current;
+                    System.arraycopy(order, 0, best, 0, vertices);
+                }
+            }
+        }
+
+        System.arraycopy(best, 0, order, 0, vertices);
+        for (int p = 0; p < vertices; p++) {
+            position[order[p]] = p;
+        }
+    }
+
+    private int randomTarget(SplittableRandom random, int i) {
+        int low = Math.max(0, i - MAX_SHIFT);
+        int high = Math.min(vertices - 1, i + MAX_SHIFT);
+        int j = low + random.nextInt(high - low);
+        return j >= i ? j + 1 : j;
+    }
+
+    // Best feasible insert of the node at i: its target goes to move[0], the gain is returned,
+    // NEGATIVE_INFINITY if the node cannot move at all. Targets are scanned outward from i,
+    // updating the gain and the feasibility by one position per step.
+    private double bestInsert(int i, int[] move) {
+        int x = order[i];
+        double best = Double.NEGATIVE_INFINITY;
+
+        // Earlier: x needs a predecessor before its new position, the nodes it passes only move later
+        int earliest = index.isStart(x) ? -1 : earliestPredecessor(x);
+        double delta = 0.0;
+        for (int j = i - 1; j >= 0 && i - j <= MAX_SHIFT && (index.isStart(x) || earliest < j); j--) {
+            delta += (weights[order[j]] - weights[x]) * (factor[j + 1] - factor[j]);
+            if (delta > best) {
+                best = delta;
+                move[0] = j;
+            }
+        }
+
+        // Later: a passed node that has x as its only earlier predecessor stops the scan
+        markSuccessors(x);
+        delta = 0.0;
+        for (int j = i + 1; j < vertices && j - i <= MAX_SHIFT; j++) {
+            int y = order[j];
+            if (mark[y] == stamp && !index.isStart(y) && !hasPredecessorBefore(y, j, x, -1)) {
+                break;
+            }
+            delta += (weights[y] - weights[x]) * (factor[j - 1] - factor[j]);
+            if (delta > best) {
+                best = delta;
+                move[0] = j;
+            }
+        }
+        return best;
+    }
+
+    // Gain of moving the node at i to j, NEGATIVE_INFINITY if that is not feasible
+    private double insertDelta(int i, int j) {
+        int x = order[i];
+        double delta = 0.0;
+        if (j < i) {
+            if (!index.isStart(x) && earliestPredecessor(x) >= j) {
+                return Double.NEGATIVE_INFINITY;
+            }
+            for (int p = j; p < i; p++) {
+                delta += (weights[order[p]] - weights[x]) * (factor[p + 1] - factor[p]);
+            }
+        } else {
+            markSuccessors(x);
+            for (int p = i + 1; p <= j; p++) {
+                int y = order[p];
+                if (mark[y] == stamp && !index.isStart(y) && !hasPredecessorBefore(y, p, x, -1)) {
+                    return Double.NEGATIVE_INFINITY;
+                }
+                delta += (weights[y] - weights[x]) * (factor[p - 1] - factor[p]);
+            }
+        }
+        return delta;
+    }
+
+    // Gain of exchanging the nodes at i and j, NEGATIVE_INFINITY if that is not feasible
+    private double swapDelta(int i, int j) {
+        if (j < i) {
+            int t = i;
+            i = j;
+            j = t;
+        }
+        int x = order[i];
+        int y = order[j];
+        // y moves up to i, x moves back to j and the nodes in between lose x as a predecessor,
+        // but may now have y
+        if (!index.isStart(y) && earliestPredecessor(y) >= i) {
+            return Double.NEGATIVE_INFINITY;
+        }
+        markSuccessors(x);
+        for (int p = i + 1; p < j; p++) {
+            int z = order[p];
+            if (mark[z] == stamp && !index.isStart(z) && !hasPredecessorBefore(z, p, x, y)) {
+                return Double.NEGATIVE_INFINITY;
+            }
+        }
+        return (weights[y] - weights[x]) * (factor[i] - factor[j]);
+    }
+
+    private void insert(int i, int j) {
+        int x = order[i];
+        if (j < i) {
+            System.arraycopy(order, j, order, j + 1, i - j);
+        } else {
+            System.arraycopy(order, i + 1, order, i, j - i);
+        }
+        order[j] = x;
+        for (int p = Math.min(i, j); p <= Math.max(i, j); p++) {
+            position[order[p]] = p;
+        }
+    }
+
+    private void swap(int i, int j) {
+        int x = order[i];
+        order[i] = order[j];
+        order[j] = x;
+        position[order[i]] = i;
+        position[order[j]] = j;
+    }
+
+    private int earliestPredecessor(int v) {
+        int earliest = Integer.MAX_VALUE;
+        for (int k = inOffsets[v]; k < inOffsets[v + 1]; k++) {
+            earliest = Math.min(earliest, position[inSources[k]]);
+        }
+        return earliest;
+    }
+
+    // Whether v has a predecessor other than excluded before limit; extra counts as one wherever it is
+    private boolean hasPredecessorBefore(int v, int limit, int excluded, int extra) {
+        for (int k = inOffsets[v]; k < inOffsets[v + 1]; k++) {
+            int u = inSources[k];
+            if (u != excluded && (u == extra || position[u] < limit)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void markSuccessors(int x) {
+        stamp++;
+        for (int k = outOffsets[x]; k < outOffsets[x + 1]; k++) {
+            mark[outTargets[k]] = stamp;
+        }
+    }
+
+    // Arguments: workbook [hill|annealing|tabu] [budget ms] [seed]
+    // Improves the greedy order of the workbook's graph and prints the result
+    public static void main(String[] args) throws IOException {
+        if (args.length < 1) {
+            System.err.println("Usage: LocalSearch workbook.xlsx [hill|annealing|tabu] [budget ms] [seed]");
+            System.exit(1);
+        }
+        Method method = args.length > 1 ? parseMethod(args[1]) : Method.TABU;
+        long budgetMillis = args.length > 2 ? Long.parseLong(args[2]) : 10000;
+        long seed = args.length > 3 ? Long.parseLong(args[3]) : System.nanoTime();
+
+        Graph g = new Graph();
+        int[] startNodes = g.toIndices(GraphWorkbookReader.read(new File(args[0]), g::addEdge));
+        ExactSolver.Solution greedy = new ExactSolver(g, startNodes).solveGreedy();
+        int[] order = greedy.order.clone();
+        double weight = new LocalSearch(g, startNodes).improve(order, method, budgetMillis, seed);
+
+        String[] names = g.nodeNames();
+        String[] named = new String[order.length];
+        for (int p = 0; p < order.length; p++) {
+            named[p] = names[order[p]];
+        }
+        System.out.println("Seed: " + seed);
+        System.out.printf("Greedy order: %.2f, after %s: %.2f (upper bound %.2f)%n", greedy.weight, method, weight, greedy.upperBound);
+        System.out.println(Arrays.toString(named));
+    }
+
+    private static Method parseMethod(String name) {
+        switch (name) {
+            case "hill":
+                return Method.HILL_CLIMBING;
+            case "annealing":
+                return Method.SIMULATED_ANNEALING;
+            case "tabu":
+                return Method.TABU;
+            default:
+                throw new IllegalArgumentException("Unknown method " + name + ", use hill, annealing or tabu");
+        }
+    }
+}
@@ -0,0 +1,181 @@
+package demo;
+
+import java.util.Arrays;
+import java.util.stream.IntStream;
+
+// Longest simple paths between all pairs, as filled in by the old exhaustive dfs: the heaviest
+// path from each start to each target, its number of steps and the path itself, where among
+// equally heavy paths the one dfs would have found first (the lexicographically smallest node
+// sequence) wins. Up to MAX_MEMO_VERTICES nodes this is exact and memoized over (visited set,
+// vertex): best[visited][v][t] is the heaviest continuation from v to t avoiding visited, shared
+// by all starts. Larger graphs fall back to the old dfs with a bounded number of expansions per
+// start. Both phases run the starts in parallel on the common fork-join pool.
+class LongestPathEngine {
+    static final int MAX_MEMO_VERTICES = 15;
+    static final long MAX_EXPANSIONS_PER_START = 2_000_000L;
+    private static final int NONE = Integer.MIN_VALUE;
+
+    private final int vertices;
+    private final int[][] neighbours;
+    private final int[][] neighbourWeights;
+
+    // Self loops are left out, they are never part of a simple path
+    LongestPathEngine(GraphIndex index) {
+        vertices = index.vertices;
+        neighbours = new int[vertices][];
+        neighbourWeights = new int[vertices][];
+        for (int v = 0; v < vertices; v++) {
+            int count = 0;
+            for (int k = index.outOffsets[v]; k < index.outOffsets[v + 1]; k++) {
+                if (index.outTargets[k] != v) {
+                    count++;
+                }
+            }
+            neighbours[v] = new int[count];
+            neighbourWeights[v] = new int[count];
+            count = 0;
+            for (int k = index.outOffsets[v]; k < index.outOffsets[v + 1]; k++) {
+                if (index.outTargets[k] != v) {
+                    neighbours[v][count] = index.outTargets[k];
+                    neighbourWeights[v][count] = index.outWeights[k];
+                    count++;
+                }
+            }
+        }
+    }
+
+    void compute(int[][] distanceMatrix, int[][] stepsMatrix, PathMatrix pathMatrix) {
+        if (vertices <= MAX_MEMO_VERTICES) {
+            computeMemoized(distanceMatrix, stepsMatrix, pathMatrix);
+        } else {
+            IntStream.range(0, vertices).parallel()
+                    .forEach(start -> new BoundedSearch(start, distanceMatrix, stepsMatrix, pathMatrix).run());
+        }
+    }
+
+    private int index(int visited, int v, int t) {
+        return (visited * vertices + v) * vertices + t;
+    }
+
+    private void computeMemoized(int[][] distanceMatrix, int[][] stepsMatrix, PathMatrix pathMatrix) {
+        int sets = 1 << vertices;
+        int[] best = new int[sets * vertices * vertices];
+
+        // A continuation only depends on supersets of its visited set, so fill the table from the
+        // largest sets down, one set size at a time, each size in parallel
+        for (int size = vertices; size >= 1; size--) {
+            int setSize = size;
+            IntStream.range(1, sets).parallel().filter(visited -> Integer.bitCount(visited) == setSize).forEach(visited -> {
+                for (int v = 0; v < vertices; v++) {
+                    if ((visited & (1 << v)) == 0) {
+                        continue;
+                    }
+                    int base = index(visited, v, 0);
+                    Arrays.fill(best, base, base + vertices, NONE);
+                    for (int k = 0; k < neighbours[v].length; k++) {
+                        int i = neighbours[v][k];
+                        if ((visited & (1 << i)) != 0) {
+                            continue;
+                        }
+                        int w = neighbourWeights[v][k];
+                        if (w > best[base + i]) {
+                            best[base + i] = w;
+                        }
+                        int next = index(visited | (1 << i), i, 0);
+                        for (int t = 0; t < vertices; t++) {
+                            if (t != i && best[next + t] != NONE && w + best[next + t] > best[base + t]) {
+                                best[base + t] = w + best[next + t];
+                            }
+                        }
+                    }
+                }
+            });
+        }
+
+        IntStream.range(0, vertices).parallel().forEach(start -> {
+            int[] path = new int[vertices];
+            for (int target = 0; target < vertices; target++) {
+                int distance = target == start ? NONE : best[index(1 << start, start, target)];
+                // dfs only recorded paths heavier than the initial 0
+                if (distance == NONE || distance <= 0) {
+                    continue;
+                }
+
+                // Walk forward taking the smallest neighbour that still reaches target at full weight
+                int v = start;
+                int visited = 1 << start;
+                int remaining = distance;
+                int length = 0;
+                path[length++] = start;
+                while (v != target) {
+                    for (int k = 0; k < neighbours[v].length; k++) {
+                        int i = neighbours[v][k];
+                        if ((visited & (1 << i)) != 0) {
+                            continue;
+                        }
+                        int w = neighbourWeights[v][k];
+                        int rest = i == target ? 0 : best[index(visited | (1 << i), i, target)];
+                        if ((i == target && w == remaining) || (i != target && rest != NONE && w + rest == remaining)) {
+                            path[length++] = i;
+                            visited |= 1 << i;
+                            remaining -= w;
+                            v = i;
+                            break;
+                        }
+                    }
+                }
+
+                distanceMatrix[start][target] = distance;
+                stepsMatrix[start][target] = length - 1;
+                pathMatrix.set(start, target, path, length);
+            }
+        });
+    }
+
+    // The old exhaustive dfs for one start, stopped after MAX_EXPANSIONS_PER_START edges, so the
+    // result is a lower bound on the longest paths
+    private final class BoundedSearch {
+        private final int start;
+        private final int[][] distanceMatrix;
+        private final int[][] stepsMatrix;
+        private final PathMatrix pathMatrix;
+        private final boolean[] visited = new boolean[vertices];
+        private final int[] path = new int[vertices];
+        private long expansions;
+
+        BoundedSearch(int start, int[][] distanceMatrix, int[][] stepsMatrix, PathMatrix pathMatrix) {
+            this.start = start;
+            this.distanceMatrix = distanceMatrix;
+            this.stepsMatrix = stepsMatrix;
+            this.pathMatrix = pathMatrix;
+        }
+
+        void run() {
+            path[0] = start;
+            dfs(start, 0, 0);
+        }
+
+        private void dfs(int current, int currentDistance, int currentSteps) {
+            visited[current] = true;
+            for (int k = 0; k < neighbours[current].length && expansions < MAX_EXPANSIONS_PER_START; k++) {
+                int i = neighbours[current][k];
+                if (visited[i]) {
+                    continue;
+                }
+                expansions++;
+                int newDistance = currentDistance + neighbourWeights[current][k];
+                int newSteps = currentSteps + 1;
+                path[newSteps] = i;
+
+                if (newDistance > distanceMatrix[start][i]) {
+                    distanceMatrix[start][i] = newDistance;
+                    stepsMatrix[start][i] = newSteps;
+                    pathMatrix.set(start, i, path, newSteps + 1);
+                }
+
+                dfs(i, newDistance, newSteps);
+            }
+            visited[current] = false;
+        }
+    }
+}
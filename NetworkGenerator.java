@@ -0,0 +1,196 @@
+package demo;
+
+import org.apache.poi.ss.SpreadsheetVersion;
+import org.apache.poi.ss.usermodel.Row;
+import org.apache.poi.ss.usermodel.Sheet;
+import org.apache.poi.xssf.streaming.SXSSFWorkbook;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.SplittableRandom;
+
+// Generates directed weighted networks shaped like the bundled examples, at any size: every
+// connection is a pair of edges in both directions with different weights (multiples of 100 up
+// to 3400), the first startNodes nodes are the roots of a tree-like backbone in which every
+// other node hangs off an earlier node nearby, and a share of the nodes get one extra cross link
+// to another recent node. Every node is reachable from the start nodes. The same seed always
+// gives the same network, and edges are generated as a stream, so a million nodes need no more
+// memory than ten.
+//
+// Output formats follow the file extension:
+//   .txt   g.addEdge(s,d,w); lines like GraphGerichtet*.txt, plus the .txt.bin copy that
+//          EdgeListReader.load would make of it
+//   .xlsx  a planning workbook with the sheets Einstellungen and Graph, as Graph reads it
+// Arguments: nodes [seed] [start nodes] [cross link share] outputs...
+// e.g. NetworkGenerator 100000 42 5 0.2 network-100000.txt network-100000.xlsx
+// The generated files can be passed to the benchmarks with -p graphFile=<file>.
+class NetworkGenerator {
+    static final int WEIGHT_STEP = 100;
+    static final int WEIGHT_STEPS = 34;
+    // Parents and cross link targets are drawn from the previous LOCALITY nodes, which keeps
+    // the backbone deep and the cross links regional like in the examples
+    static final int LOCALITY = 8;
+
+    interface EdgeSink {
+        void addEdge(int source, int destination, int weight) throws IOException;
+    }
+
+    private final int nodes;
+    private final long seed;
+    private final int startNodes;
+    private final double crossLinkShare;
+
+    NetworkGenerator(int nodes, long seed, int startNodes, double crossLinkShare) {
+        if (nodes < 1) {
+            throw new IllegalArgumentException("A network needs at least one node, got " + nodes);
+        }
+        if (startNodes < 1 || startNodes > nodes) {
+            throw new IllegalArgumentException("Start nodes must be between 1 and " + nodes + ", got " + startNodes);
+        }
+        if (crossLinkShare < 0 || crossLinkShare > 1) {
+            throw new IllegalArgumentException("Cross link share must be between 0 and 1, got " + crossLinkShare);
+        }
+        this.nodes = nodes;
+        this.seed = seed;
+        this.startNodes = startNodes;
+        this.crossLinkShare = crossLinkShare;
+    }
+
+    int getNodes() {
+        return nodes;
+    }
+
+    int getStartNodes() {
+        return startNodes;
+    }
+
+    // Feed every edge to sink, always in the same order for the same parameters, and return
+    // the number of edges
+    long generate(EdgeSink sink) throws IOException {
+        SplittableRandom random = new SplittableRandom(seed);
+        long edges = 0;
+        for (int v = startNodes; v < nodes; v++) {
+            // The first nodes after the roots are spread over the roots so that every start node
+            // has a connection
+            int parent = v < 2 * startNodes ? v - startNodes : recentNode(random, v);
+            connect(random, parent, v, sink);
+            edges += 2;
+
+            if (v > 1 && random.nextDouble() < crossLinkShare) {
+                int other = recentNode(random, v);
+                if (other != parent) {
+                    connect(random, v, other, sink);
+                    edges += 2;
+                }
+            }
+        }
+        return edges;
+    }
+
+    private static int recentNode(SplittableRandom random, int v) {
+        return v - 1 - random.nextInt(Math.min(v, LOCALITY));
+    }
+
+    private static void connect(SplittableRandom random, int a, int b, EdgeSink sink) throws IOException {
+        int forward = WEIGHT_STEP * (1 + random.nextInt(WEIGHT_STEPS));
+        int backward = WEIGHT_STEP * (1 + random.nextInt(WEIGHT_STEPS - 1));
+        if (backward >= forward) {
+            // Never the same weight in both directions
+            backward += WEIGHT_STEP;
+        }
+        sink.addEdge(a, b, forward);
+        sink.addEdge(b, a, backward);
+    }
+
+    void writeEdgeList(String filePath) throws IOException {
+        try (Writer out = Files.newBufferedWriter(Paths.get(filePath), StandardCharsets.UTF_8)) {
+            long edges = generate((s, d, w) -> out.write("g.addEdge(" + s + "," + d + "," + w + ");\n"));
+            System.out.println("Wrote " + nodes + " nodes and " + edges + " edges to " + filePath);
+        }
+        writeBinaryCache(filePath);
+    }
+
+    // The binary copy EdgeListReader.load keeps next to filePath, written as the edges come
+    private void writeBinaryCache(String filePath) throws IOException {
+        try (EdgeListReader.BinaryWriter writer = EdgeListReader.BinaryWriter.of(filePath)) {
+            generate(writer::add);
+            writer.finish();
+        }
+    }
+
+    // Einstellungen lists the start nodes, Graph one edge per row under a Start/Ziel/Wert header
+    void writeWorkbook(String filePath) throws IOException {
+        long maxEdges = SpreadsheetVersion.EXCEL2007.getMaxRows() - 1;
+        SXSSFWorkbook workbook = new SXSSFWorkbook(100);
+        workbook.setCompressTempFiles(true);
+        try (FileOutputStream fos = new FileOutputStream(filePath)) {
+            Sheet settings = workbook.createSheet("Einstellungen");
+            for (int s = 0; s < startNodes; s++) {
+                settings.createRow(s).createCell(0).setCellValue(s);
+            }
+
+            Sheet graph = workbook.createSheet("Graph");
+            Row header = graph.createRow(0);
+            header.createCell(0).setCellValue("Start");
+            header.createCell(1).setCellValue("Ziel");
+            header.createCell(2).setCellValue("Wert");
+            int[] rowIndex = {1};
+            long edges = generate((s, d, w) -> {
+                if (rowIndex[0] > maxEdges) {
+                    throw new IllegalStateException("The network has more than " + maxEdges + " edges and does not fit into an Excel sheet, write a .txt file instead.");
+                }
+                Row row = graph.createRow(rowIndex[0]++);
+                row.createCell(0).setCellValue(s);
+                row.createCell(1).setCellValue(d);
+                row.createCell(2).setCellValue(w);
+            });
+
+            workbook.write(fos);
+            System.out.println("Wrote " + nodes + " nodes and " + edges + " edges to " + filePath);
+        } finally {
+            workbook.dispose();
+            workbook.close();
+        }
+    }
+
+    void write(String filePath) throws IOException {
+        if (filePath.toLowerCase().endsWith(".xlsx")) {
+            writeWorkbook(filePath);
+        } else {
+            writeEdgeList(filePath);
+        }
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2) {
+            System.err.println("Usage: NetworkGenerator nodes [seed] [start nodes] [cross link share] outputs...");
+            System.exit(1);
+        }
+
+        int nodes = Integer.parseInt(args[0]);
+        long seed = 1;
+        int startNodes = Math.min(3, nodes);
+        double crossLinkShare = 0.2;
+        int next = 1;
+        if (next < args.length - 1 && isNumber(args[next])) {
+            seed = Long.parseLong(args[next++]);
+        }
+        if (next < args.length - 1 && isNumber(args[next])) {
+            startNodes = Integer.parseInt(args[next++]);
+        }
+        if (next < args.length - 1 && isNumber(args[next])) {
+            crossLinkShare = Double.parseDouble(args[next++]);
+        }
+
+        NetworkGenerator generator = new NetworkGenerator(nodes, seed, startNodes, crossLinkShare);
+        for (int i = next; i < args.length; i++) {
+            generator.write(args[i]);
+        }
+    }
+
+    private static boolean isNumber(String arg) {
+        return arg.matches("-?[0-9]+(\\.[0-9]+)?");
+    }
+}
@@ -0,0 +1,43 @@
+package demo;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+// Interns node names into dense ids 0, 1, 2, ... in the order they are first seen and keeps the
+// reverse table, so both directions are a single lookup. The planning code works on the ids only;
+// names are needed when a workbook is read and when results are written.
+class NodeDictionary {
+    private final Map<String, Integer> ids = new HashMap<>();
+    private String[] names = new String[16];
+
+    // Id of name, a new one if name has not been seen before
+    int intern(String name) {
+        Integer id = ids.get(name);
+        if (id != null) {
+            return id;
+        }
+        int next = ids.size();
+        if (next == names.length) {
+            names = Arrays.copyOf(names, next * 2);
+        }
+        names[next] = name;
+        ids.put(name, next);
+        return next;
+    }
+
+    // Id of name, -1 if it is unknown
+    int indexOf(String name) {
+        Integer id = ids.get(name);
+        return id != null ? id : -1;
+    }
+
+    int size() {
+        return ids.size();
+    }
+
+    // Names indexed by id, padded with null up to length
+    String[] names(int length) {
+        return Arrays.copyOf(names, Math.max(length, 0));
+    }
+}
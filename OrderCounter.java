@@ -0,0 +1,340 @@
+package demo;
+
+import java.io.File;
+import java.io.IOException;
+import java.math.BigInteger;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.BooleanSupplier;
+import java.util.function.Consumer;
+import java.util.random.RandomGenerator;
+import java.util.stream.LongStream;
+
+// Counts the feasible build orders of a graph exactly and numbers them, so that they can be
+// listed one by one without ever producing one twice, or drawn uniformly at random. The count is a dynamic
+// program over the built sets reachable from the start nodes, one level per position: the
+// number of ways to complete a built set is the sum over its frontier of the ways to complete
+// the set with that node added. Rank r is the r-th order in lexicographic order of the node
+// sequences; unranking walks down the levels, skipping whole subtrees by their counts.
+// The frontier sampler of RandomSampler picks uniformly among the frontier at each step, which
+// makes orders with few choices early on far more likely than others; unranking a uniform
+// random rank draws every order with the same probability.
+// Built sets are bitmasks, so graphs of at most 63 nodes whose reachable built sets fit into
+// maxStates can be counted; tryCount returns null for the others.
+class OrderCounter {
+    static final int MAX_VERTICES = 63;
+    // About 60 MB of sets and counts
+    static final int MAX_STATES = 1 << 20;
+    // Up to this many orders are listed rather than sampled
+    static final long MAX_LISTED = 1L << 30;
+    // Orders per slice of a parallel listing; the stop condition is checked between slices
+    static final int SLICE = 1 << 16;
+
+    private final GraphIndex index;
+    private final int vertices;
+    private final long startMask;
+    // successors[v]: the nodes v makes buildable
+    private final long[] successors;
+    // sets[p]: the reachable built sets of p nodes, sorted; completions[p][i]: the number of
+    // ways to complete sets[p][i]
+    private final long[][] sets;
+    private final BigInteger[][] completions;
+
+    private OrderCounter(GraphIndex index, long[] successors, long[][] sets) {
+        this.index = index;
+        vertices = index.vertices;
+        startMask = mask(index.startNodes);
+        this.successors = successors;
+        this.sets = sets;
+        completions = new BigInteger[vertices + 1][];
+        completions[vertices] = new BigInteger[sets[vertices].length];
+        Arrays.fill(completions[vertices], BigInteger.ONE);
+        for (int p = vertices - 1; p >= 0; p--) {
+            completions[p] = new BigInteger[sets[p].length];
+            for (int i = 0; i < sets[p].length; i++) {
+                long set = sets[p][i];
+                BigInteger ways = BigInteger.ZERO;
+                for (long m = frontier(set); m != 0; m &= m - 1) {
+                    ways = ways.add(completions(p + 1, set | (m & -m)));
+                }
+                completions[p][i] = ways;
+            }
+        }
+    }
+
+    // The counter of index, which must have its start nodes attached, or null if the graph has
+    // more than MAX_VERTICES nodes or more than maxStates reachable built sets
+    static OrderCounter tryCount(GraphIndex index, int maxStates) {
+        int vertices = index.vertices;
+        if (vertices > MAX_VERTICES) {
+            return null;
+        }
+        long[] successors = new long[vertices];
+        for (int v = 0; v < vertices; v++) {
+            for (int k = index.outOffsets[v]; k < index.outOffsets[v + 1]; k++) {
+                successors[v] |= 1L << index.outTargets[k];
+            }
+        }
+        long startMask = mask(index.startNodes);
+
+        long[][] sets = new long[vertices + 1][];
+        sets[0] = new long[]{0L};
+        long states = 1;
+        for (int p = 0; p < vertices; p++) {
+            // Every set of the next level, with repeats, then sorted and made unique
+            long[] next = new long[Math.max(16, sets[p].length)];
+            int size = 0;
+            for (long set : sets[p]) {
+                long reach = startMask;
+                for (long m = set; m != 0; m &= m - 1) {
+                    reach |= successors[Long.numberOfTrailingZeros(m)];
+                }
+                for (long m = reach & ~set; m != 0; m &= m - 1) {
+                    if (size == next.length) {
+                        if (size >= 4L * maxStates) {
+                            return null;
+                        }
+                        next = Arrays.copyOf(next, size * 2);
+                    }
+                    next[size++] = set | (m & -m);
+                }
+            }
+            Arrays.sort(next, 0, size);
+            int unique = 0;
+            for (int i = 0; i < size; i++) {
+                if (unique == 0 || next[i] != next[unique - 1]) {
+                    next[unique++] = next[i];
+                }
+            }
+            states += unique;
+            if (states > maxStates) {
+                return null;
+            }
+            sets[p + 1] = Arrays.copyOf(next, unique);
+        }
+        return new OrderCounter(index, successors, sets);
+    }
+
+    private static long mask(int[] nodes) {
+        long mask = 0;
+        for (int node : nodes) {
+            mask |= 1L << node;
+        }
+        return mask;
+    }
+
+    // Nodes buildable next after set
+    private long frontier(long set) {
+        long reach = startMask;
+        for (long m = set; m != 0; m &= m - 1) {
+            reach |= successors[Long.numberOfTrailingZeros(m)];
+        }
+        return reach & ~set;
+    }
+
+    private BigInteger completions(int level, long set) {
+        int i = Arrays.binarySearch(sets[level], set);
+        return i >= 0 ? completions[level][i] : BigInteger.ZERO;
+    }
+
+    // The number of feasible build orders, 0 if some node cannot be reached
+    BigInteger count() {
+        return completions[0][0];
+    }
+
+    // Reachable built sets the count went through
+    long states() {
+        long states = 0;
+        for (long[] level : sets) {
+            states += level.length;
+        }
+        return states;
+    }
+
+    // Write the order with rank into order
+    int[] unrank(BigInteger rank, int[] order) {
+        if (rank.signum() < 0 || rank.compareTo(count()) >= 0) {
+            throw new IllegalArgumentException("Rank " + rank + " is not below the " + count() + " orders");
+        }
+        long set = 0;
+        for (int p = 0; p < vertices; p++) {
+            for (long m = frontier(set); ; m &= m - 1) {
+                long bit = m & -m;
+                BigInteger ways = completions(p + 1, set | bit);
+                if (rank.compareTo(ways) < 0) {
+                    order[p] = Long.numberOfTrailingZeros(bit);
+                    set |= bit;
+                    break;
+                }
+                rank = rank.subtract(ways);
+            }
+        }
+        return order;
+    }
+
+    // The rank of a feasible order
+    BigInteger rank(int[] order) {
+        BigInteger rank = BigInteger.ZERO;
+        long set = 0;
+        for (int p = 0; p < vertices; p++) {
+            long bit = 1L << order[p];
+            long candidates = frontier(set);
+            if ((candidates & bit) == 0) {
+                throw new IllegalArgumentException("Node " + order[p] + " cannot be built at position " + p);
+            }
+            for (long m = candidates & (bit - 1); m != 0; m &= m - 1) {
+                rank = rank.add(completions(p + 1, set | (m & -m)));
+            }
+            set |= bit;
+        }
+        return rank;
+    }
+
+    // A rank drawn uniformly from [0, count)
+    BigInteger randomRank(RandomGenerator random) {
+        BigInteger count = count();
+        int bits = count.bitLength();
+        byte[] bytes = new byte[bits / 8 + 1];
+        while (true) {
+            random.nextBytes(bytes);
+            // Keep the sign bit clear and no more bits than count has, so at least half the draws are taken
+            bytes[0] &= (byte) ((1 << (bits % 8)) - 1);
+            BigInteger rank = new BigInteger(bytes);
+            if (rank.compareTo(count) < 0) {
+                return rank;
+            }
+        }
+    }
+
+    // Hand the orders with ranks [from, to) to consumer in rank order. The array is reused for
+    // every order; consumer copies it to keep it. Disjoint ranges can be listed on different
+    // threads at the same time.
+    void forEach(BigInteger from, BigInteger to, Consumer<int[]> consumer) {
+        if (from.compareTo(to) >= 0) {
+            return;
+        }
+        int[] order = unrank(from, new int[vertices]);
+        // built[p] and reach[p]: the nodes built before position p and the nodes buildable then
+        long[] built = new long[vertices + 1];
+        long[] reach = new long[vertices + 1];
+        reach[0] = startMask;
+        for (int p = 0; p < vertices; p++) {
+            built[p + 1] = built[p] | 1L << order[p];
+            reach[p + 1] = reach[p] | successors[order[p]];
+        }
+        for (BigInteger left = to.subtract(from); ; ) {
+            consumer.accept(order);
+            left = left.subtract(BigInteger.ONE);
+            if (left.signum() == 0 || !next(order, built, reach)) {
+                return;
+            }
+        }
+    }
+
+    // Step to the next order in lexicographic order; false after the last one. Changes the
+    // latest position that has a larger candidate and fills the rest with the smallest ones.
+    private boolean next(int[] order, long[] built, long[] reach) {
+        for (int p = vertices - 2; p >= 0; p--) {
+            long larger = reach[p] & ~built[p] & -(2L << order[p]);
+            if (larger == 0) {
+                continue;
+            }
+            order[p] = Long.numberOfTrailingZeros(larger);
+            for (int q = p; q < vertices; q++) {
+                if (q > p) {
+                    order[q] = Long.numberOfTrailingZeros(reach[q] & ~built[q]);
+                }
+                built[q + 1] = built[q] | 1L << order[q];
+                reach[q + 1] = reach[q] | successors[order[q]];
+            }
+            return true;
+        }
+        return false;
+    }
+
+    // List every order on all cores, a slice of ranks at a time, until stop says so, keeping the
+    // best in store. Listed orders are distinct by construction, so only those good enough to get
+    // into the store are offered to it; the others would only fill its seen-set. A store that logs
+    // every order it sees is offered all of them. True if every order was listed.
+    boolean list(BuildOrderStore store, BooleanSupplier stop) {
+        BigInteger count = count();
+        BigInteger slice = BigInteger.valueOf(SLICE);
+        long slices = count.add(slice).subtract(BigInteger.ONE).divide(slice).longValueExact();
+        AtomicBoolean stopped = new AtomicBoolean();
+        boolean all = store.logs();
+        LongStream.range(0, slices).parallel().forEach(k -> {
+            if (stopped.get() || stop.getAsBoolean()) {
+                stopped.set(true);
+                return;
+            }
+            double[] threshold = {all ? Double.NEGATIVE_INFINITY : store.minWeight()};
+            BigInteger from = slice.multiply(BigInteger.valueOf(k));
+            forEach(from, count.min(from.add(slice)), order -> {
+                double weight = index.weight(order);
+                if (weight > threshold[0]) {
+                    store.offer(order, weight);
+                    if (!all) {
+                        threshold[0] = store.minWeight();
+                    }
+                }
+            });
+        });
+        return !stopped.get();
+    }
+
+    // Draw uniformly random orders on all cores until policy says stop, in the sampling loop of
+    // RandomSampler. Draws are independent, so an order can come up again; store recognises the
+    // repeats and counts them as duplicates. As every order is equally likely here, no draw is
+    // abandoned and the coverage estimate of the policy holds exactly.
+    StopPolicy.Tracker sample(long seed, StopPolicy policy, BuildOrderStore store, Graph.PlanMonitor monitor) {
+        return RandomSampler.sample(vertices, seed, policy, store, monitor, (random, order, threshold, drawn) -> {
+            unrank(randomRank(random), order);
+            long high = 0;
+            long low = 0;
+            for (int position = 0; position < vertices; position++) {
+                high ^= BuildOrderStore.zobristHigh(position, order[position]);
+                low ^= BuildOrderStore.zobristLow(position, order[position]);
+            }
+            drawn.fingerprintHigh = high;
+            drawn.fingerprintLow = low;
+            return index.weight(order);
+        });
+    }
+
+    // Arguments: workbook [output file]
+    // Prints the number of feasible orders; if there are at most MAX_LISTED, lists all of them
+    // and writes the best like planWorkbook
+    public static void main(String[] args) throws IOException {
+        if (args.length < 1) {
+            System.err.println("Usage: OrderCounter workbook.xlsx [output file]");
+            System.exit(1);
+        }
+        File file = new File(args[0]);
+        String output = args.length > 1 ? args[1] : new File(file.getAbsoluteFile().getParentFile(), "build_orders.xlsx").getPath();
+
+        Graph g = new Graph();
+        int[] startNodes = g.toIndices(GraphWorkbookReader.read(file, g::addEdge));
+        GraphIndex index = g.index().withStartNodes(startNodes);
+        long started = System.nanoTime();
+        OrderCounter counter = tryCount(index, MAX_STATES);
+        if (counter == null) {
+            System.out.println("Too many built sets to count the orders of " + file.getName());
+            return;
+        }
+        System.out.printf("%s orders over %d built sets, %d ms%n", counter.count(), counter.states(), (System.nanoTime() - started) / 1_000_000);
+        if (counter.count().compareTo(BigInteger.valueOf(MAX_LISTED)) > 0) {
+            return;
+        }
+
+        BuildOrderStore store = new BuildOrderStore(1000);
+        started = System.nanoTime();
+        counter.list(store, () -> false);
+        System.out.printf("Best of all orders: %.2f, %d ms%n", store.bestWeight(), (System.nanoTime() - started) / 1_000_000);
+        try (BuildOrderWriter writer = BuildOrderWriter.open(output, g.nodeNames())) {
+            for (BuildOrderStore.Entry entry : store.bestOrders()) {
+                writer.write(entry.order, entry.weight);
+            }
+        }
+        System.out.println("Build orders with weights have been written to: " + output);
+    }
+}
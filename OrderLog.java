@@ -0,0 +1,94 @@
+package demo;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CancellationException;
+
+// Writes build orders to a BuildOrderWriter on a thread of its own, so that whoever finds an
+// order only pays for a copy and a slot in a bounded queue, not for the disk. A full queue
+// blocks the caller until the writer has caught up.
+final class OrderLog implements Closeable {
+    private static final int MAX_QUEUED = 4096;
+    private static final int MAX_QUEUED_NODES = 1 << 20;
+    // Tells the writer thread that nothing follows
+    private static final BuildOrderStore.Entry END = new BuildOrderStore.Entry(new int[0], 0.0);
+
+    private final BuildOrderWriter writer;
+    private final BlockingQueue<BuildOrderStore.Entry> queue;
+    private final Thread thread;
+    private volatile IOException failure;
+
+    // Orders of vertices nodes; fewer are queued on large graphs to stay within MAX_QUEUED_NODES ints
+    OrderLog(BuildOrderWriter writer, int vertices) {
+        this.writer = writer;
+        queue = new ArrayBlockingQueue<>(Math.max(1, Math.min(MAX_QUEUED, MAX_QUEUED_NODES / Math.max(1, vertices))));
+        thread = new Thread(this::drain, "Order log");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    void add(int[] order, double weight) {
+        if (failure != null) {
+            throw new UncheckedIOException(failure);
+        }
+        try {
+            queue.put(new BuildOrderStore.Entry(order.clone(), weight));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new CancellationException("Interrupted while logging a build order");
+        }
+    }
+
+    private void drain() {
+        while (true) {
+            BuildOrderStore.Entry entry;
+            try {
+                entry = queue.take();
+            } catch (InterruptedException e) {
+                return;
+            }
+            if (entry == END) {
+                return;
+            }
+            // After a failure keep taking orders, so that nobody waits for a slot forever
+            if (failure == null) {
+                try {
+                    writer.write(entry.order, entry.weight);
+                } catch (IOException e) {
+                    failure = e;
+                }
+            }
+        }
+    }
+
+    // Write what is queued and close the writer; an interrupt does not cut the file short
+    @Override
+    public void close() throws IOException {
+        boolean interrupted = false;
+        while (true) {
+            try {
+                queue.put(END);
+                break;
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        while (thread.isAlive()) {
+            try {
+                thread.join();
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+        writer.close();
+        if (failure != null) {
+            throw failure;
+        }
+    }
+}
@@ -0,0 +1,105 @@
+package demo;
+
+import java.util.Arrays;
+
+// The path chosen for every (start, target) pair. Longest simple paths lack the optimal
+// substructure of shortest paths (the best path to t need not extend the best path to its
+// predecessor), so a single predecessor per pair cannot describe them. Instead the paths of each
+// start form a prefix tree held in predecessor arrays: tree node -> graph node and parent tree
+// node. A pair points at the tree node its path ends in, and paths are rebuilt on demand.
+// Pairs of one start may be set from one thread while other starts are set from others.
+class PathMatrix {
+    private final int[][] end;
+    private final PrefixTree[] trees;
+
+    PathMatrix(int vertices) {
+        end = new int[vertices][vertices];
+        trees = new PrefixTree[vertices];
+        for (int s = 0; s < vertices; s++) {
+            Arrays.fill(end[s], -1);
+            trees[s] = new PrefixTree(s);
+        }
+    }
+
+    // path[0 .. length) runs from start to target
+    void set(int start, int target, int[] path, int length) {
+        end[start][target] = trees[start].insert(path, length);
+    }
+
+    boolean hasPath(int start, int target) {
+        return end[start][target] != -1;
+    }
+
+    // The nodes from start to target, or null if there is no path
+    int[] path(int start, int target) {
+        int treeNode = end[start][target];
+        if (treeNode == -1) {
+            return null;
+        }
+        PrefixTree tree = trees[start];
+        int[] path = new int[tree.depth[treeNode] + 1];
+        for (int k = path.length - 1; k >= 0; k--) {
+            path[k] = tree.node[treeNode];
+            treeNode = tree.parent[treeNode];
+        }
+        return path;
+    }
+
+    String pathString(int start, int target) {
+        int[] path = path(start, target);
+        StringBuilder sb = new StringBuilder();
+        for (int k = 0; k < path.length; k++) {
+            if (k > 0) {
+                sb.append(" -> ");
+            }
+            sb.append(path[k]);
+        }
+        return sb.toString();
+    }
+
+    private static final class PrefixTree {
+        int[] node = new int[16];
+        int[] parent = new int[16];
+        int[] depth = new int[16];
+        int[] firstChild = new int[16];
+        int[] nextSibling = new int[16];
+        int size;
+
+        PrefixTree(int root) {
+            add(-1, root);
+        }
+
+        int insert(int[] path, int length) {
+            int current = 0;
+            for (int k = 1; k < length; k++) {
+                int child = firstChild[current];
+                while (child != -1 && node[child] != path[k]) {
+                    child = nextSibling[child];
+                }
+                current = child != -1 ? child : add(current, path[k]);
+            }
+            return current;
+        }
+
+        private int add(int parentNode, int graphNode) {
+            if (size == node.length) {
+                int capacity = size * 2;
+                node = Arrays.copyOf(node, capacity);
+                parent = Arrays.copyOf(parent, capacity);
+                depth = Arrays.copyOf(depth, capacity);
+                firstChild = Arrays.copyOf(firstChild, capacity);
+                nextSibling = Arrays.copyOf(nextSibling, capacity);
+            }
+            int id = size++;
+            node[id] = graphNode;
+            parent[id] = parentNode;
+            depth[id] = parentNode == -1 ? 0 : depth[parentNode] + 1;
+            firstChild[id] = -1;
+            nextSibling[id] = parentNode == -1 ? -1 : firstChild[parentNode];
+            if (parentNode != -1) {
+                firstChild[parentNode] = id;
+            }
+            return id;
+        }
+    }
+}
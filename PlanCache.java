@@ -0,0 +1,421 @@
+package demo;
+
+import java.io.*;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.*;
+
+// Planning results kept on disk, so that a workbook planned before is neither read nor planned
+// again. An entry is keyed by the SHA-256 of the graph: the forward index, the start nodes, the
+// discount rate and the node names, which the output is written with. It holds the node names
+// and the forward index, enough to write the output without the workbook, the lookahead averages
+// of BeamSearch, the best orders found with the upper bound on their weight, and whether that
+// bound was reached. Workbooks are mapped to entries by the SHA-256 of their bytes in small
+// alias files, which spares parsing them again, and by the SHA-256 of their path, which finds
+// the plan of the previous version of a workbook for IncrementalPlanner.
+// Every entry and alias is one file, written to a temporary file and moved into place; entries
+// are read back through a read-only memory mapping and checked, a damaged one counts as a miss.
+// Reading touches the modification time of the files, and after every write the least recently
+// used files are deleted until the cache fits into maxBytes.
+class PlanCache {
+    static final int MAGIC = 0x424F5043;
+    static final int VERSION = 2;
+    static final int MAX_CACHED_ORDERS = 100;
+    // Orders of very large graphs are cut down to this many ints in total
+    static final long MAX_CACHED_NODES = 4_000_000L;
+    static final long DEFAULT_MAX_BYTES = 256L << 20;
+    private static final String ENTRY_SUFFIX = ".plan";
+    private static final String ALIAS_SUFFIX = ".file";
+    private static final String PATH_SUFFIX = ".path";
+
+    static class Entry {
+        final String key;
+        final String[] names;
+        // With the start nodes attached
+        final GraphIndex index;
+        final double[] averages;
+        final double upperBound;
+        final boolean optimal;
+        // Best first
+        final List<BuildOrderStore.Entry> orders;
+
+        Entry(String key, String[] names, GraphIndex index, double[] averages, double upperBound, boolean optimal,
+              List<BuildOrderStore.Entry> orders) {
+            this.key = key;
+            this.names = names;
+            this.index = index;
+            this.averages = averages;
+            this.upperBound = upperBound;
+            this.optimal = optimal;
+            this.orders = orders;
+        }
+    }
+
+    private final Path directory;
+    private final long maxBytes;
+    // Continue planning from the cached orders instead of returning them as they are
+    private volatile boolean resume;
+
+    PlanCache(Path directory, long maxBytes) throws IOException {
+        if (maxBytes < 0) {
+            throw new IllegalArgumentException("Cache size must not be negative, got " + maxBytes);
+        }
+        this.directory = Files.createDirectories(directory);
+        this.maxBytes = maxBytes;
+    }
+
+    // The cache of the drop window, in the user's home directory
+    static PlanCache inHomeDirectory() throws IOException {
+        return new PlanCache(Paths.get(System.getProperty("user.home"), ".build-orders", "cache"), DEFAULT_MAX_BYTES);
+    }
+
+    PlanCache setResume(boolean resume) {
+        this.resume = resume;
+        return this;
+    }
+
+    boolean resume() {
+        return resume;
+    }
+
+    // Hex SHA-256 of the bytes of a workbook
+    static String fileKey(File file) throws IOException {
+        MessageDigest digest = sha256();
+        byte[] buffer = new byte[1 << 16];
+        try (InputStream in = new FileInputStream(file)) {
+            for (int n; (n = in.read(buffer)) > 0; ) {
+                digest.update(buffer, 0, n);
+            }
+        }
+        return hex(digest.digest());
+    }
+
+    // Hex SHA-256 of the absolute path of a workbook
+    static String pathKey(File file) {
+        return hex(sha256().digest(file.getAbsolutePath().getBytes(StandardCharsets.UTF_8)));
+    }
+
+    // Hex SHA-256 of everything the weight of an order depends on, and of the names of the nodes
+    static String graphKey(GraphIndex index, String[] names) {
+        MessageDigest digest = sha256();
+        ByteBuffer buffer = ByteBuffer.allocate(1 << 16);
+        buffer.putInt(VERSION).putInt(index.vertices).putDouble(Graph.DISCOUNT_RATE);
+        for (int[] array : new int[][]{index.outOffsets, index.outTargets, index.outWeights}) {
+            buffer.putInt(array.length);
+            for (int value : array) {
+                if (buffer.remaining() < Integer.BYTES) {
+                    digest.update(buffer.flip());
+                    buffer.clear();
+                }
+                buffer.putInt(value);
+            }
+        }
+        // The mask, so that the order and repetition of the start nodes do not matter
+        for (long word : index.startMask) {
+            if (buffer.remaining() < Long.BYTES) {
+                digest.update(buffer.flip());
+                buffer.clear();
+            }
+            buffer.putLong(word);
+        }
+        digest.update(buffer.flip());
+        // Length-prefixed, so that no two lists of names hash the same bytes
+        buffer.clear();
+        for (String name : names) {
+            byte[] bytes = name.getBytes(StandardCharsets.UTF_8);
+            digest.update(buffer.putInt(bytes.length).flip());
+            buffer.clear();
+            digest.update(bytes);
+        }
+        return hex(digest.digest());
+    }
+
+    // The entry the workbook with fileKey was last planned into, null if there is none
+    Entry forFile(String fileKey) {
+        return viaAlias(directory.resolve(fileKey + ALIAS_SUFFIX));
+    }
+
+    // The entry the workbook at the path with pathKey was last planned into, whatever it contained then
+    Entry forPath(String pathKey) {
+        return viaAlias(directory.resolve(pathKey + PATH_SUFFIX));
+    }
+
+    private Entry viaAlias(Path alias) {
+        String key;
+        try {
+            key = new String(Files.readAllBytes(alias), StandardCharsets.US_ASCII).trim();
+        } catch (IOException e) {
+            return null;
+        }
+        Entry entry = get(key);
+        if (entry == null) {
+            delete(alias);
+        } else {
+            touch(alias);
+        }
+        return entry;
+    }
+
+    // The entry of the graph with key, null if there is none or it cannot be read
+    Entry get(String key) {
+        Path path = directory.resolve(key + ENTRY_SUFFIX);
+        if (!Files.isRegularFile(path)) {
+            return null;
+        }
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            Entry entry = read(key, channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+            touch(path);
+            return entry;
+        } catch (IOException | BufferUnderflowException | IllegalArgumentException e) {
+            System.err.println("Dropping unreadable cache entry " + path + ": " + e);
+            delete(path);
+            return null;
+        }
+    }
+
+    // Store entry and alias the workbook to it, see alias
+    void put(String fileKey, String pathKey, Entry entry) throws IOException {
+        Path path = directory.resolve(entry.key + ENTRY_SUFFIX);
+        Path temporary = Files.createTempFile(directory, entry.key, ".tmp");
+        try {
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temporary), 1 << 16))) {
+                write(entry, out);
+            }
+            if (Files.size(temporary) > Math.min(maxBytes, Integer.MAX_VALUE)) {
+                return;
+            }
+            Files.move(temporary, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            alias(fileKey, pathKey, entry.key);
+        } finally {
+            Files.deleteIfExists(temporary);
+        }
+        evict();
+    }
+
+    // Remember that the workbook with fileKey at the path with pathKey, either of them null if
+    // unknown, was planned into the entry with key
+    void alias(String fileKey, String pathKey, String key) throws IOException {
+        if (fileKey != null) {
+            writeAlias(directory.resolve(fileKey + ALIAS_SUFFIX), key);
+        }
+        if (pathKey != null) {
+            writeAlias(directory.resolve(pathKey + PATH_SUFFIX), key);
+        }
+    }
+
+    // Readers see the old key or the new one, never a part of it
+    private void writeAlias(Path alias, String key) throws IOException {
+        Path temporary = Files.createTempFile(directory, alias.getFileName().toString(), ".tmp");
+        try {
+            Files.write(temporary, key.getBytes(StandardCharsets.US_ASCII));
+            Files.move(temporary, alias, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temporary);
+        }
+    }
+
+    // Delete the least recently used files until the cache fits into maxBytes
+    synchronized void evict() throws IOException {
+        List<Path> files = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory)) {
+            for (Path file : stream) {
+                String name = file.getFileName().toString();
+                if (name.endsWith(ENTRY_SUFFIX) || name.endsWith(ALIAS_SUFFIX) || name.endsWith(PATH_SUFFIX)) {
+                    files.add(file);
+                }
+            }
+        }
+        Map<Path, FileTime> used = new HashMap<>();
+        Map<Path, Long> sizes = new HashMap<>();
+        long total = 0;
+        for (Path file : files) {
+            try {
+                used.put(file, Files.getLastModifiedTime(file));
+                sizes.put(file, Files.size(file));
+                total += sizes.get(file);
+            } catch (NoSuchFileException e) {
+                // Evicted by another process meanwhile
+            }
+        }
+        files.removeIf(file -> !used.containsKey(file));
+        files.sort(Comparator.comparing(used::get));
+        for (Iterator<Path> it = files.iterator(); total > maxBytes && it.hasNext(); ) {
+            Path file = it.next();
+            if (delete(file)) {
+                total -= sizes.get(file);
+            }
+        }
+    }
+
+    // Layout, big-endian: magic, version, vertices, names (length and UTF-8 bytes each), start
+    // nodes, outOffsets, outTargets, outWeights, averages, upper bound, optimal flag, then the
+    // number of orders followed by the weight and nodes of each; arrays are prefixed with their length
+    private static void write(Entry entry, DataOutputStream out) throws IOException {
+        GraphIndex index = entry.index;
+        out.writeInt(MAGIC);
+        out.writeInt(VERSION);
+        out.writeInt(index.vertices);
+        for (String name : entry.names) {
+            byte[] bytes = name.getBytes(StandardCharsets.UTF_8);
+            out.writeInt(bytes.length);
+            out.write(bytes);
+        }
+        writeInts(out, index.startNodes);
+        writeInts(out, index.outOffsets);
+        writeInts(out, index.outTargets);
+        writeInts(out, index.outWeights);
+        out.writeInt(entry.averages.length);
+        for (double average : entry.averages) {
+            out.writeDouble(average);
+        }
+        out.writeDouble(entry.upperBound);
+        out.writeBoolean(entry.optimal);
+
+        int count = (int) Math.min(Math.min(MAX_CACHED_ORDERS, entry.orders.size()),
+                Math.max(1, MAX_CACHED_NODES / Math.max(1, index.vertices)));
+        out.writeInt(count);
+        for (BuildOrderStore.Entry order : entry.orders.subList(0, count)) {
+            out.writeDouble(order.weight);
+            for (int node : order.order) {
+                out.writeInt(node);
+            }
+        }
+    }
+
+    private static void writeInts(DataOutputStream out, int[] values) throws IOException {
+        out.writeInt(values.length);
+        for (int value : values) {
+            out.writeInt(value);
+        }
+    }
+
+    // Throws IllegalArgumentException or BufferUnderflowException unless the entry is complete and
+    // consistent, so that a damaged file is never handed to the planners
+    private static Entry read(String key, ByteBuffer in) {
+        if (in.getInt() != MAGIC || in.getInt() != VERSION) {
+            throw new IllegalArgumentException("not a cache entry of version " + VERSION);
+        }
+        int vertices = length(in, Integer.BYTES);
+        String[] names = new String[vertices];
+        for (int v = 0; v < vertices; v++) {
+            byte[] bytes = new byte[length(in, 1)];
+            in.get(bytes);
+            names[v] = new String(bytes, StandardCharsets.UTF_8);
+        }
+        int[] startNodes = readInts(in);
+        int[] outOffsets = readInts(in);
+        int[] outTargets = readInts(in);
+        int[] outWeights = readInts(in);
+        double[] averages = new double[length(in, Double.BYTES)];
+        in.asDoubleBuffer().get(averages);
+        in.position(in.position() + averages.length * Double.BYTES);
+        double upperBound = in.getDouble();
+        boolean optimal = in.get() != 0;
+
+        int count = length(in, Double.BYTES + (long) vertices * Integer.BYTES);
+        List<BuildOrderStore.Entry> orders = new ArrayList<>(count);
+        for (int k = 0; k < count; k++) {
+            double weight = in.getDouble();
+            int[] order = new int[vertices];
+            in.asIntBuffer().get(order);
+            in.position(in.position() + vertices * Integer.BYTES);
+            checkOrder(order);
+            orders.add(new BuildOrderStore.Entry(order, weight));
+        }
+        if (in.hasRemaining()) {
+            throw new IllegalArgumentException(in.remaining() + " bytes after the last order");
+        }
+        if (outOffsets.length != vertices + 1 || averages.length != vertices || outWeights.length != outTargets.length) {
+            throw new IllegalArgumentException("tables do not match " + vertices + " nodes");
+        }
+        if (outOffsets[0] != 0 || outOffsets[vertices] != outTargets.length) {
+            throw new IllegalArgumentException("offsets do not span the " + outTargets.length + " edges");
+        }
+        for (int v = 0; v < vertices; v++) {
+            if (outOffsets[v] > outOffsets[v + 1]) {
+                throw new IllegalArgumentException("offsets decrease at node " + v);
+            }
+        }
+        checkNodes(outTargets, vertices);
+        checkNodes(startNodes, vertices);
+
+        GraphIndex index = GraphIndex.fromForward(vertices, outOffsets, outTargets, outWeights).withStartNodes(startNodes);
+        return new Entry(key, names, index, averages, upperBound, optimal, orders);
+    }
+
+    // A length prefix of items of itemBytes each, which must fit into what is left of in
+    private static int length(ByteBuffer in, long itemBytes) {
+        int length = in.getInt();
+        if (length < 0 || length * Math.max(1, itemBytes) > in.remaining()) {
+            throw new IllegalArgumentException("length " + length + " at byte " + (in.position() - Integer.BYTES) + " is out of range");
+        }
+        return length;
+    }
+
+    private static void checkNodes(int[] nodes, int vertices) {
+        for (int node : nodes) {
+            if (node < 0 || node >= vertices) {
+                throw new IllegalArgumentException("node " + node + " is not one of " + vertices);
+            }
+        }
+    }
+
+    // Every node exactly once
+    private static void checkOrder(int[] order) {
+        checkNodes(order, order.length);
+        boolean[] seen = new boolean[order.length];
+        for (int node : order) {
+            if (seen[node]) {
+                throw new IllegalArgumentException("node " + node + " is built twice");
+            }
+            seen[node] = true;
+        }
+    }
+
+    private static int[] readInts(ByteBuffer in) {
+        int[] values = new int[length(in, Integer.BYTES)];
+        in.asIntBuffer().get(values);
+        in.position(in.position() + values.length * Integer.BYTES);
+        return values;
+    }
+
+    private static void touch(Path path) {
+        try {
+            Files.setLastModifiedTime(path, FileTime.fromMillis(System.currentTimeMillis()));
+        } catch (IOException e) {
+            // Only the eviction order suffers
+        }
+    }
+
+    // False if the file could not be deleted, e.g. because it is still mapped on Windows
+    private static boolean delete(Path path) {
+        try {
+            Files.deleteIfExists(path);
+            return true;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("Every Java platform has SHA-256", e);
+        }
+    }
+
+    private static String hex(byte[] bytes) {
+        StringBuilder sb = new StringBuilder(bytes.length * 2);
+        for (byte b : bytes) {
+            sb.append(Character.forDigit((b >>> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+        }
+        return sb.toString();
+    }
+}
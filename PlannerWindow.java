@@ -0,0 +1,186 @@
+package demo;
+
+import javax.swing.*;
+import javax.swing.Timer;
+import java.awt.*;
+import java.awt.datatransfer.DataFlavor;
+import java.awt.dnd.*;
+import java.io.File;
+import java.io.IOException;
+import java.util.*;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+
+// The drop target of Graph.main. Dropped workbooks are queued and planned one after the other by a
+// SwingWorker, so the window stays responsive while a workbook is planned. Twice a second it
+// shows the samples per second, the distinct orders and the best weight so far. The running job
+// can be cancelled, or stopped early, in which case the orders found so far are written.
+// Results are kept in the PlanCache in the user's home directory, so a workbook dropped again
+// unchanged is answered from there right away.
+// All fields are only touched on the event dispatch thread.
+class PlannerWindow {
+    private static final long BUDGET_MILLIS = 10000;
+    private static final int REFRESH_MILLIS = 500;
+
+    private final JFrame frame;
+    private final JLabel status;
+    private final JButton stopButton;
+    private final JButton cancelButton;
+    private final Deque<File> queue = new ArrayDeque<>();
+    private final Timer refresh;
+    // Null if the cache directory cannot be created
+    private final PlanCache cache;
+
+    // The running job, null while idle
+    private File current;
+    private Graph.PlanMonitor monitor;
+    private long lastSamples;
+    private long lastRefresh;
+
+    PlannerWindow() {
+        cache = openCache();
+        frame = new JFrame("Excel Drop Reader");
+        frame.setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
+        frame.setSize(400, 300);
+
+        JLabel label = new JLabel("Drag & Drop an Excel file here", SwingConstants.CENTER);
+        frame.add(label, BorderLayout.CENTER);
+
+        status = new JLabel("Idle", SwingConstants.CENTER);
+        stopButton = new JButton("Stop and write now");
+        cancelButton = new JButton("Cancel");
+        stopButton.addActionListener(e -> {
+            if (monitor != null) {
+                monitor.stopRequested = true;
+            }
+        });
+        cancelButton.addActionListener(e -> {
+            if (monitor != null) {
+                monitor.cancelled = true;
+            }
+        });
+        JPanel buttons = new JPanel();
+        buttons.add(stopButton);
+        buttons.add(cancelButton);
+        JPanel south = new JPanel(new BorderLayout());
+        south.add(status, BorderLayout.CENTER);
+        south.add(buttons, BorderLayout.SOUTH);
+        frame.add(south, BorderLayout.SOUTH);
+        setRunning(false);
+
+        new DropTarget(label, new DropTargetAdapter() {
+            @Override
+            public void drop(DropTargetDropEvent dtde) {
+                try {
+                    dtde.acceptDrop(dtde.getDropAction());
+                    List<?> droppedFiles = (List<?>) dtde.getTransferable().getTransferData(DataFlavor.javaFileListFlavor);
+                    for (Object dropped : droppedFiles) {
+                        File file = (File) dropped;
+                        if (file.getName().endsWith(".xlsx")) {
+                            queue.add(file);
+                        } else {
+                            JOptionPane.showMessageDialog(frame, "Please drop an Excel file.");
+                        }
+                    }
+                    dtde.dropComplete(true);
+                } catch (Exception ex) {
+                    ex.printStackTrace();
+                }
+                startNext();
+            }
+        });
+
+        refresh = new Timer(REFRESH_MILLIS, e -> showProgress());
+        frame.setVisible(true);
+    }
+
+    private static PlanCache openCache() {
+        try {
+            return PlanCache.inHomeDirectory();
+        } catch (IOException e) {
+            System.err.println("Planning without a cache: " + e);
+            return null;
+        }
+    }
+
+    private void startNext() {
+        if (current != null) {
+            showProgress();
+            return;
+        }
+        File file = queue.poll();
+        if (file == null) {
+            status.setText("Idle");
+            return;
+        }
+
+        current = file;
+        monitor = new Graph.PlanMonitor();
+        lastSamples = 0;
+        lastRefresh = System.nanoTime();
+        setRunning(true);
+        showProgress();
+        refresh.start();
+
+        Graph.PlanMonitor jobMonitor = monitor;
+        File output = new File(file.getParent(), "build_orders.xlsx");
+        new SwingWorker<Graph.PlanResult, Void>() {
+            @Override
+            protected Graph.PlanResult doInBackground() throws Exception {
+                return Graph.planWorkbook(file, output, BUDGET_MILLIS, StopPolicy.adaptive(BUDGET_MILLIS),
+                        PlanningCore.parse(PlanningCore.DEFAULT_PIPELINE), cache, null, jobMonitor);
+            }
+
+            @Override
+            protected void done() {
+                refresh.stop();
+                current = null;
+                monitor = null;
+                setRunning(false);
+                startNext();
+                try {
+                    Graph.PlanResult result = get();
+                    JOptionPane.showMessageDialog(frame, "Build orders with weights have been written to: " + result.output.getPath());
+                } catch (ExecutionException e) {
+                    if (e.getCause() instanceof CancellationException) {
+                        if (current == null) {
+                            status.setText(e.getCause().getMessage());
+                        }
+                    } else {
+                        e.getCause().printStackTrace();
+                        JOptionPane.showMessageDialog(frame, "Planning " + file.getName() + " failed: " + e.getCause(), "Error", JOptionPane.ERROR_MESSAGE);
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        }.execute();
+    }
+
+    private void setRunning(boolean running) {
+        stopButton.setEnabled(running);
+        cancelButton.setEnabled(running);
+    }
+
+    private void showProgress() {
+        if (monitor == null) {
+            return;
+        }
+        long now = System.nanoTime();
+        long samples = monitor.samples.sum();
+        double perSecond = now > lastRefresh ? (samples - lastSamples) * 1e9 / (now - lastRefresh) : 0;
+        lastSamples = samples;
+        lastRefresh = now;
+
+        BuildOrderStore store = monitor.store;
+        String text = current.getName() + ": " + monitor.phase;
+        if (store != null) {
+            text += String.format(", %,.0f samples/s, %d distinct orders, best %.2f", perSecond, store.distinctOrders(), store.bestWeight());
+        }
+        if (!queue.isEmpty()) {
+            text += " (" + queue.size() + " queued)";
+        }
+        status.setText("<html><center>" + text + "</center></html>");
+    }
+}
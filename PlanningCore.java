@@ -0,0 +1,318 @@
+package demo;
+
+import java.math.BigInteger;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.function.Consumer;
+
+// Runs PlanningStrategies against one GraphIndex of a workbook. The index is built once and
+// shared read-only, every strategy keeps its own scratch space, so strategies can run one after
+// another or side by side without preprocessing the graph again. A pipeline is written as
+// groups separated by commas that run in sequence, with the strategies of a group joined by +
+// running concurrently, e.g. "exact,beam,sampling+genetic,local". A group only starts while the
+// run is neither stopped nor known to be optimal.
+// Built in: exact (ExactSolver), average (the greedy of nachDurchschnitt by the average weight
+// per step along longest paths, on small graphs), beam (BeamSearch), sampling (RandomSampler until the StopPolicy says
+// stop), uniform (every order once through OrderCounter if there are few enough, else uniformly
+// random ones until the StopPolicy says stop), genetic (GeneticOptimiser) and local
+// (LocalSearch on the best orders so far); more can be added with register.
+class PlanningCore {
+    static final String DEFAULT_PIPELINE = "exact,beam,sampling,local";
+    // For a graph that changed a little since it was planned, starting from the carried over
+    // orders: no sampling, and a tenth of the budget
+    static final String INCREMENTAL_PIPELINE = "exact,beam,local";
+    static final int INCREMENTAL_BUDGET_SHARE = 10;
+    static final int GENETIC_POPULATION = 1000;
+
+    private static final Map<String, PlanningStrategy> STRATEGIES = new ConcurrentHashMap<>();
+
+    // What the strategies of one run share
+    static class Context {
+        final GraphIndex index;
+        final BuildOrderStore store;
+        final long budgetMillis;
+        final long seed;
+        final StopPolicy sampling;
+        final Graph.PlanMonitor monitor;
+        final String workbook;
+        private final RandomSampler sampler;
+        private double[] averages;
+        private volatile double upperBound;
+        private volatile boolean optimal;
+
+        // index must have its start nodes attached
+        Context(GraphIndex index, BuildOrderStore store, long budgetMillis, long seed, StopPolicy sampling,
+                Graph.PlanMonitor monitor, String workbook) {
+            this.index = index;
+            this.store = store;
+            this.budgetMillis = budgetMillis;
+            this.seed = seed;
+            this.sampling = sampling;
+            this.monitor = monitor;
+            this.workbook = workbook;
+            sampler = new RandomSampler(index);
+            upperBound = index.upperBound();
+        }
+
+        RandomSampler sampler() {
+            return sampler;
+        }
+
+        // The lookahead averages of BeamSearch, computed on first use unless a cache supplied them
+        synchronized double[] averages() {
+            if (averages == null) {
+                averages = BeamSearch.averages(index);
+            }
+            return averages;
+        }
+
+        synchronized void useAverages(double[] averages) {
+            this.averages = averages;
+        }
+
+        // True once the monitor asks to stop or the best order is known to be optimal
+        boolean shouldStop() {
+            return optimal || monitor.shouldStop();
+        }
+
+        boolean isOptimal() {
+            return optimal;
+        }
+
+        double upperBound() {
+            return upperBound;
+        }
+
+        // No order weighs more than bound
+        synchronized void bound(double bound) {
+            upperBound = Math.min(upperBound, bound);
+            improved();
+        }
+
+        void offer(int[] order, double weight) {
+            store.offer(order, weight);
+            improved();
+        }
+
+        // Record the store's best weight after a strategy offered orders to it directly
+        void improved() {
+            double best = store.bestWeight();
+            monitor.statistics.best(best);
+            if (upperBound - best <= 1e-9 * Math.max(1.0, Math.abs(best))) {
+                optimal = true;
+            }
+        }
+    }
+
+    // A built-in strategy: a name, the phase it shows and what it does
+    private static final class BuiltIn implements PlanningStrategy {
+        private final String name;
+        private final String phase;
+        private final Consumer<Context> body;
+
+        BuiltIn(String name, String phase, Consumer<Context> body) {
+            this.name = name;
+            this.phase = phase;
+            this.body = body;
+        }
+
+        @Override
+        public String name() {
+            return name;
+        }
+
+        @Override
+        public String phase() {
+            return phase;
+        }
+
+        @Override
+        public void plan(Context context) {
+            body.accept(context);
+        }
+    }
+
+    static {
+        register(new BuiltIn("exact", "Exact search", PlanningCore::exact));
+        register(new BuiltIn("average", "Average greedy", PlanningCore::average));
+        register(new BuiltIn("beam", "Beam search", c -> beam(c, BeamSearch.DEFAULT_WIDTH)));
+        register(new BuiltIn("sampling", "Sampling", PlanningCore::sample));
+        register(new BuiltIn("uniform", "Uniform sampling", PlanningCore::uniform));
+        register(new BuiltIn("genetic", "Genetic search", PlanningCore::evolve));
+        register(new BuiltIn("local", "Local search", PlanningCore::polish));
+    }
+
+    // Make strategy available to pipelines under its name, replacing one of the same name
+    static void register(PlanningStrategy strategy) {
+        STRATEGIES.put(strategy.name(), strategy);
+    }
+
+    static PlanningStrategy strategy(String name) {
+        PlanningStrategy strategy = STRATEGIES.get(name);
+        if (strategy == null) {
+            throw new IllegalArgumentException("Unknown strategy " + name + ", known are " + new TreeSet<>(STRATEGIES.keySet()));
+        }
+        return strategy;
+    }
+
+    // The groups of a pipeline like "exact,beam,sampling+genetic,local"
+    static List<List<PlanningStrategy>> parse(String pipeline) {
+        List<List<PlanningStrategy>> groups = new ArrayList<>();
+        for (String group : pipeline.split(",")) {
+            List<PlanningStrategy> strategies = new ArrayList<>();
+            for (String name : group.split("\\+")) {
+                strategies.add(strategy(name.trim()));
+            }
+            groups.add(strategies);
+        }
+        return groups;
+    }
+
+    // Run the groups of pipeline one after another
+    static void run(List<List<PlanningStrategy>> pipeline, Context context) {
+        for (List<PlanningStrategy> group : pipeline) {
+            if (context.shouldStop()) {
+                return;
+            }
+            if (group.size() == 1) {
+                context.monitor.startPhase(group.get(0).phase());
+                group.get(0).plan(context);
+            } else {
+                runConcurrently(group, context);
+            }
+        }
+    }
+
+    // One thread per strategy; the first failure is rethrown once all of them have ended
+    private static void runConcurrently(List<PlanningStrategy> group, Context context) {
+        StringJoiner phase = new StringJoiner(" + ");
+        for (PlanningStrategy strategy : group) {
+            phase.add(strategy.phase());
+        }
+        context.monitor.startPhase(phase.toString());
+
+        ExecutorService threads = Executors.newFixedThreadPool(group.size());
+        try {
+            List<Future<?>> running = new ArrayList<>();
+            for (PlanningStrategy strategy : group) {
+                running.add(threads.submit(() -> strategy.plan(context)));
+            }
+            RuntimeException failure = null;
+            for (Future<?> future : running) {
+                try {
+                    future.get();
+                } catch (ExecutionException e) {
+                    if (failure == null) {
+                        failure = e.getCause() instanceof RuntimeException
+                                ? (RuntimeException) e.getCause()
+                                : new IllegalStateException(e.getCause());
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new CancellationException("Interrupted while planning " + context.workbook);
+                }
+            }
+            if (failure != null) {
+                throw failure;
+            }
+        } finally {
+            threads.shutdown();
+        }
+    }
+
+    // Small and medium graphs are solved exactly, larger ones get the greedy order and a bound
+    private static void exact(Context context) {
+        ExactSolver solver = new ExactSolver(context.index);
+        solver.setStopCondition(context::shouldStop);
+        ExactSolver.Solution exact = solver.solve(context.budgetMillis);
+        System.out.printf("Best order for %s: %.2f (optimality gap %.2f)%n", context.workbook, exact.weight, exact.getGap());
+        context.store.offer(exact.order, exact.weight);
+        context.bound(exact.upperBound);
+    }
+
+    private static void average(Context context) {
+        int vertices = context.index.vertices;
+        if (vertices > nachDurchschnitt.MAX_VERTICES) {
+            System.out.printf("Average greedy skipped for %s, %d nodes are too many%n", context.workbook, vertices);
+            return;
+        }
+        int[] order = new nachDurchschnitt(context.index).buildOrder(context.index.startNodes);
+        context.store.offer(order, context.index.weight(order));
+        context.improved();
+    }
+
+    private static void beam(Context context, int width) {
+        BeamSearch beam = new BeamSearch(context.index, context.averages());
+        beam.setStopCondition(context::shouldStop);
+        beam.search(width, context.store);
+        context.improved();
+    }
+
+    private static void sample(Context context) {
+        StopPolicy.Tracker tracker = context.sampler().sample(context.index.startNodes, context.seed, context.sampling,
+                context.store, context.monitor);
+        System.out.printf("Sampling %s stopped after %d orders, %d of them abandoned, about %.0f distinct (%s)%n",
+                context.workbook, tracker.samples(), tracker.abandoned(), tracker.estimatedDistinct(), tracker.reason().description);
+        context.improved();
+    }
+
+    // Listing every order proves the best of them optimal. Graphs too large to count are
+    // sampled the usual way.
+    private static void uniform(Context context) {
+        OrderCounter counter = OrderCounter.tryCount(context.index, OrderCounter.MAX_STATES);
+        if (counter == null) {
+            System.out.printf("Too many built sets to count the orders of %s, sampling instead%n", context.workbook);
+            sample(context);
+            return;
+        }
+        BigInteger count = counter.count();
+        if (count.signum() == 0) {
+            throw new IllegalStateException("Not every node of " + context.workbook + " is reachable from the start nodes");
+        }
+        if (count.compareTo(BigInteger.valueOf(OrderCounter.MAX_LISTED)) <= 0) {
+            long deadline = System.nanoTime() + context.budgetMillis * 1_000_000L;
+            boolean complete = counter.list(context.store, () -> context.shouldStop() || System.nanoTime() >= deadline);
+            System.out.printf(complete ? "Listed all %s orders of %s%n" : "Listing the %s orders of %s stopped before the end%n",
+                    count, context.workbook);
+            if (complete) {
+                context.bound(context.store.bestWeight());
+            } else {
+                context.improved();
+            }
+            return;
+        }
+        long duplicates = context.store.duplicateOrders();
+        StopPolicy.Tracker tracker = counter.sample(context.seed, context.sampling, context.store, context.monitor);
+        System.out.printf("Uniform sampling of %s orders of %s stopped after %d orders, %d of them drawn before (%s)%n", count,
+                context.workbook, tracker.samples(), context.store.duplicateOrders() - duplicates, tracker.reason().description);
+        context.improved();
+    }
+
+    // Evolves until the budget is used up. The optimiser holds the current and the next
+    // generation, so the population is smaller than GENETIC_POPULATION on large graphs to keep
+    // both within MAX_KEPT_NODES ints.
+    private static void evolve(Context context) {
+        int vertices = context.index.vertices;
+        int population = (int) Math.min(GENETIC_POPULATION, Graph.MAX_KEPT_NODES / 2 / Math.max(1, vertices));
+        if (population < 2) {
+            System.out.printf("Genetic search skipped for %s, %d nodes are too many%n", context.workbook, vertices);
+            return;
+        }
+        GeneticOptimiser optimiser = new GeneticOptimiser(context.index, population, context.seed);
+        optimiser.setStopCondition(context::shouldStop);
+        optimiser.run(context.budgetMillis, Integer.MAX_VALUE, context.store);
+        context.improved();
+    }
+
+    // Random orders are rarely locally optimal; polish the best ones and keep what that finds
+    private static void polish(Context context) {
+        LocalSearch search = new LocalSearch(context.index);
+        List<BuildOrderStore.Entry> best = context.store.bestOrders();
+        int polished = Math.min(Graph.POLISHED_ORDERS, best.size());
+        for (int k = 0; k < polished && !context.shouldStop(); k++) {
+            int[] order = best.get(k).order;
+            double weight = search.improve(order, LocalSearch.Method.HILL_CLIMBING, context.budgetMillis / 10 / polished, context.seed + k);
+            context.offer(order, weight);
+        }
+    }
+}
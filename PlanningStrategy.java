@@ -0,0 +1,17 @@
+package demo;
+
+// One way of finding build orders, run by PlanningCore against the shared GraphIndex of a
+// workbook. A strategy offers what it finds to the context's store, returns once its part of
+// the budget is used up or context.shouldStop() says so, and keeps all of its working memory
+// to itself, so that strategies of one group can run at the same time.
+interface PlanningStrategy {
+    // The name a pipeline refers to it by, e.g. "sampling"
+    String name();
+
+    // The phase the monitor and the statistics show while it runs
+    default String phase() {
+        return name();
+    }
+
+    void plan(PlanningCore.Context context);
+}
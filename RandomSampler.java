@@ -0,0 +1,294 @@
+package demo;
+
+import java.util.Arrays;
+import java.util.SplittableRandom;
+import java.util.random.RandomGenerator;
+import java.util.stream.IntStream;
+
+// Random build orders over a GraphIndex, the sampling strategy of planWorkbook. Holds nothing
+// but per-thread scratch space, so one sampler serves any number of threads and runs.
+final class RandomSampler {
+    private final GraphIndex index;
+    private final ThreadLocal<Scratch> scratch;
+
+    RandomSampler(GraphIndex index) {
+        this.index = index;
+        scratch = ThreadLocal.withInitial(() -> new Scratch(index.vertices));
+    }
+
+    // Draw one random build order into buildOrder (length vertices) and return its total weight.
+    // A node can be built once it is a start node or a neighbour of an already built node; every
+    // step picks uniformly among those. The weight is accumulated along the way, and the draw is
+    // abandoned with NEGATIVE_INFINITY as soon as the order cannot reach minWeight any more.
+    // Runs in O(V + E) and allocates nothing after the first call per thread.
+    double draw(int[] startNodes, RandomGenerator random, int[] buildOrder, double minWeight) {
+        Scratch s = scratch.get();
+        long[] seen = s.seen;
+        int[] frontier = s.frontier;
+        Arrays.fill(seen, 0L);
+
+        // Only positive weights can still raise the total, and none of them by more than the
+        // discount of the next position allows
+        double totalWeight = 0.0;
+        double remainingGain = index.positiveWeightSum;
+        boolean abandonable = minWeight != Double.NEGATIVE_INFINITY;
+        long fingerprintHigh = 0;
+        long fingerprintLow = 0;
+
+        // A node is marked as seen when it enters the frontier, so it is either waiting there or built
+        int frontierSize = 0;
+        int peakFrontier = 0;
+        for (int startNode : startNodes) {
+            if ((seen[startNode >>> 6] & (1L << startNode)) == 0) {
+                seen[startNode >>> 6] |= 1L << startNode;
+                frontier[frontierSize++] = startNode;
+            }
+        }
+
+        for (int position = 0; position < index.vertices; position++) {
+            if (frontierSize == 0) {
+                throw new IllegalStateException("Only " + position + " of " + index.vertices + " nodes are reachable from the start nodes");
+            }
+
+            // Select a random node from the frontier and swap the last entry into its slot
+            int randomIndex = random.nextInt(frontierSize);
+            int nodeToBuild = frontier[randomIndex];
+            frontier[randomIndex] = frontier[--frontierSize];
+            buildOrder[position] = nodeToBuild;
+            fingerprintHigh ^= BuildOrderStore.zobristHigh(position, nodeToBuild);
+            fingerprintLow ^= BuildOrderStore.zobristLow(position, nodeToBuild);
+
+            int weight = index.incomingWeights[nodeToBuild];
+            totalWeight += weight * index.discountFactors[position];
+            if (abandonable) {
+                if (weight > 0) {
+                    remainingGain -= weight;
+                }
+                if (totalWeight + remainingGain * index.discountFactors[position + 1] < minWeight) {
+                    return Double.NEGATIVE_INFINITY;
+                }
+            }
+
+            for (int k = index.outOffsets[nodeToBuild]; k < index.outOffsets[nodeToBuild + 1]; k++) {
+                int node = index.outTargets[k];
+                if ((seen[node >>> 6] & (1L << node)) == 0) {
+                    seen[node >>> 6] |= 1L << node;
+                    frontier[frontierSize++] = node;
+                }
+            }
+            if (frontierSize > peakFrontier) {
+                peakFrontier = frontierSize;
+            }
+        }
+
+        s.fingerprintHigh = fingerprintHigh;
+        s.fingerprintLow = fingerprintLow;
+        s.peakFrontier = peakFrontier;
+        return totalWeight;
+    }
+
+    // Working memory of the sampler, one per thread and reused for every order it draws
+    private static final class Scratch {
+        final long[] seen;
+        final int[] frontier;
+        // Zobrist fingerprint and largest frontier of the last order drawn on this thread
+        long fingerprintHigh;
+        long fingerprintLow;
+        int peakFrontier;
+
+        Scratch(int vertices) {
+            seen = new long[(vertices + 63) >>> 6];
+            frontier = new int[vertices];
+        }
+    }
+
+    // Draw random build orders on all cores until policy says stop, keeping the best of them in
+    // store. Every worker draws from its own SplittableRandom split off the master seed, so the
+    // sequence each worker produces is reproducible for a given seed. Workers collect their
+    // draws in a Batch and take the store's lock once per batch to hand them in, so the lock and
+    // the tracker are not on the path of every draw; stop criteria that count draws therefore
+    // see them up to a batch per worker late. Once the store is full, draws that cannot beat its
+    // weakest order as of the last hand-in are abandoned; they count as samples but are never
+    // offered, unless policy limits the distinct orders or the store logs every order, which
+    // both need every order offered.
+    // monitor, if not null, gets the draws counted and timed in
+    // its statistics and can end the run early. Returns the tracker of the run, which tells why it stopped.
+    StopPolicy.Tracker sample(int[] starts, long seed, StopPolicy policy, BuildOrderStore store, Graph.PlanMonitor monitor) {
+        return sample(index.vertices, seed, policy, store, monitor, (random, order, threshold, drawn) -> {
+            double weight = draw(starts, random, order, threshold);
+            Scratch s = scratch.get();
+            drawn.fingerprintHigh = s.fingerprintHigh;
+            drawn.fingerprintLow = s.fingerprintLow;
+            drawn.peakFrontier = s.peakFrontier;
+            return weight;
+        });
+    }
+
+    // One way of drawing orders of a graph, for the sampling loop
+    interface Drawer {
+        // Draw an order into order and return its weight, or NEGATIVE_INFINITY if it was abandoned
+        // because it could not reach threshold; a drawer is free to ignore threshold. A complete
+        // order leaves its fingerprint in drawn, and its largest frontier if the drawer knows it.
+        double draw(SplittableRandom random, int[] order, double threshold, Drawn drawn);
+    }
+
+    // What a worker's last draw left besides the order and its weight
+    static final class Drawn {
+        long fingerprintHigh;
+        long fingerprintLow;
+        // -1 if the drawer does not track the frontier
+        int peakFrontier = -1;
+    }
+
+    // The sampling loop of sample, for any drawer of orders of vertices nodes
+    static StopPolicy.Tracker sample(int vertices, long seed, StopPolicy policy, BuildOrderStore store, Graph.PlanMonitor monitor,
+                                     Drawer drawer) {
+        StopPolicy.Tracker tracker = policy.start(store.bestWeight());
+
+        int workers = Runtime.getRuntime().availableProcessors();
+        SplittableRandom master = new SplittableRandom(seed);
+        SplittableRandom[] streams = new SplittableRandom[workers];
+        for (int w = 0; w < workers; w++) {
+            streams[w] = master.split();
+        }
+
+        RunStatistics statistics = monitor != null ? monitor.statistics : null;
+        int batchSize = Batch.size(vertices);
+        long started = System.nanoTime();
+        IntStream.range(0, workers).parallel().forEach(w -> {
+            SplittableRandom stream = streams[w];
+            Batch batch = new Batch(batchSize, vertices);
+            Drawn drawn = new Drawn();
+            while (tracker.running()) {
+                if (monitor != null && monitor.shouldStop()) {
+                    tracker.stop(StopPolicy.Reason.STOPPED);
+                    break;
+                }
+                long drawStarted = System.nanoTime();
+                double totalWeight = drawer.draw(stream, batch.next(), batch.threshold, drawn);
+                if (statistics != null) {
+                    statistics.draw.record(System.nanoTime() - drawStarted);
+                }
+                if (totalWeight == Double.NEGATIVE_INFINITY) {
+                    batch.abandoned++;
+                } else {
+                    if (statistics != null && drawn.peakFrontier >= 0) {
+                        statistics.peakFrontier.record(drawn.peakFrontier);
+                    }
+                    batch.add(drawn.fingerprintHigh, drawn.fingerprintLow, totalWeight);
+                }
+                if (batch.isFull()) {
+                    batch.handIn(store, policy, tracker, statistics);
+                }
+            }
+            batch.handIn(store, policy, tracker, statistics);
+        });
+        if (statistics != null) {
+            statistics.samplingDone(System.nanoTime() - started, tracker.reason());
+        }
+        return tracker;
+    }
+
+    // Draws of one worker waiting to be handed in to the store: their nodes back to back, their
+    // fingerprints and weights, and the number of draws abandoned since the last hand-in
+    static final class Batch {
+        static final int MAX_ORDERS = 256;
+        static final int MAX_NODES = 1 << 16;
+
+        private final int vertices;
+        private final int[] orders;
+        private final long[] high;
+        private final long[] low;
+        private final double[] weights;
+        private final int[] order;
+        private int size;
+        int abandoned;
+        // Weight below which the worker abandons a draw, the store's as of the last hand-in
+        double threshold = Double.NEGATIVE_INFINITY;
+
+        // Orders per batch for graphs of vertices nodes, fewer on large graphs so a batch stays within MAX_NODES ints
+        static int size(int vertices) {
+            return Math.max(1, Math.min(MAX_ORDERS, MAX_NODES / Math.max(1, vertices)));
+        }
+
+        Batch(int capacity, int vertices) {
+            this.vertices = vertices;
+            orders = new int[capacity * vertices];
+            high = new long[capacity];
+            low = new long[capacity];
+            weights = new double[capacity];
+            order = new int[vertices];
+        }
+
+        // The array to draw the next order into
+        int[] next() {
+            return order;
+        }
+
+        // Keep the order just drawn into next()
+        void add(long fingerprintHigh, long fingerprintLow, double weight) {
+            System.arraycopy(order, 0, orders, size * vertices, vertices);
+            high[size] = fingerprintHigh;
+            low[size] = fingerprintLow;
+            weights[size] = weight;
+            size++;
+        }
+
+        // Abandoned draws count too, so that the threshold keeps up when most draws are abandoned
+        boolean isFull() {
+            return size + abandoned >= high.length;
+        }
+
+        // Offer the orders to store under its lock, as long as it has room for policy, and account
+        // for them in tracker and statistics; statistics may be null
+        void handIn(BuildOrderStore store, StopPolicy policy, StopPolicy.Tracker tracker, RunStatistics statistics) {
+            if (size == 0 && abandoned == 0) {
+                return;
+            }
+            int handedIn = 0;
+            int duplicates = 0;
+            double improvement = Double.NEGATIVE_INFINITY;
+            long started = System.nanoTime();
+            // Workers racing for the last free slot must not push the count past the limit
+            synchronized (store) {
+                for (; handedIn < size; handedIn++) {
+                    if (store.distinctOrders() >= policy.maxOrders()) {
+                        tracker.stop(StopPolicy.Reason.ORDERS);
+                        break;
+                    }
+                    double weight = weights[handedIn];
+                    if (weight > store.bestWeight()) {
+                        improvement = weight;
+                    }
+                    System.arraycopy(orders, handedIn * vertices, order, 0, vertices);
+                    boolean distinct = store.offer(high[handedIn], low[handedIn], order, weight);
+                    tracker.record(high[handedIn], distinct, weight, store.distinctOrders());
+                    if (!distinct) {
+                        duplicates++;
+                    }
+                }
+                if (abandoned > 0) {
+                    tracker.abandoned(abandoned);
+                }
+                if (policy.maxOrders() == Integer.MAX_VALUE && !store.logs()) {
+                    threshold = store.minWeight();
+                }
+            }
+            if (statistics != null) {
+                // Dedupe time includes waiting for the store's lock, spread over the batch
+                long each = (System.nanoTime() - started) / Math.max(1, handedIn);
+                for (int k = 0; k < handedIn; k++) {
+                    statistics.dedupe.record(each);
+                }
+                statistics.samples.add(handedIn + abandoned);
+                statistics.abandoned.add(abandoned);
+                statistics.duplicates.add(duplicates);
+                if (improvement != Double.NEGATIVE_INFINITY) {
+                    statistics.best(improvement);
+                }
+            }
+            size = 0;
+            abandoned = 0;
+        }
+    }
+}
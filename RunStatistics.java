@@ -0,0 +1,314 @@
+package demo;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+// Where a planWorkbook run spent its time and what the sampler saw: phase durations, latency
+// histograms of drawing an order (which scores it on the way), deduplicating it in the store
+// and writing a row, the peak frontier size per draw, the duplicate rate and the best weight
+// over time. Counters are LongAdders and histograms have one LongAdder per power of two, so
+// sampler threads record without contending on a lock. Phases and improvements are also
+// committed as JFR events, which cost next to nothing unless a recording is running:
+//   java -XX:StartFlightRecording:filename=plan.jfr ... ; jfr print --categories "Build Orders" plan.jfr
+// The summary goes into a Statistics sheet of the output workbook, or a .stats.json file next
+// to .csv and .tsv output.
+class RunStatistics {
+    static final int MAX_CURVE_POINTS = 1000;
+
+    // Values grouped by their highest set bit: bucket b counts values in [2^(b-1), 2^b), bucket 0 zeros
+    static class Histogram {
+        private final LongAdder[] buckets = new LongAdder[65];
+        private final LongAdder count = new LongAdder();
+        private final LongAdder sum = new LongAdder();
+        private final LongAccumulator max = new LongAccumulator(Math::max, 0);
+
+        Histogram() {
+            for (int b = 0; b < buckets.length; b++) {
+                buckets[b] = new LongAdder();
+            }
+        }
+
+        void record(long value) {
+            buckets[64 - Long.numberOfLeadingZeros(Math.max(0, value))].increment();
+            count.increment();
+            sum.add(value);
+            max.accumulate(value);
+        }
+
+        long count() {
+            return count.sum();
+        }
+
+        double mean() {
+            long n = count.sum();
+            return n == 0 ? 0.0 : (double) sum.sum() / n;
+        }
+
+        long max() {
+            return max.get();
+        }
+
+        // Upper end of the bucket holding the q-quantile, capped at the largest value recorded
+        long percentile(double q) {
+            long n = count.sum();
+            long rank = (long) Math.ceil(q * n);
+            long seen = 0;
+            for (int b = 0; b < buckets.length; b++) {
+                seen += buckets[b].sum();
+                if (seen >= rank && seen > 0) {
+                    return b == 0 ? 0 : Math.min(max(), b == 64 ? Long.MAX_VALUE : (1L << b) - 1);
+                }
+            }
+            return 0;
+        }
+    }
+
+    @Name("demo.PlanPhase")
+    @Label("Plan Phase")
+    @Category("Build Orders")
+    @Description("One phase of planning a workbook")
+    static class PhaseEvent extends Event {
+        @Label("Workbook")
+        String workbook;
+        @Label("Phase")
+        String phase;
+    }
+
+    @Name("demo.BestWeight")
+    @Label("Best Weight")
+    @Category("Build Orders")
+    @Description("The best build order of a workbook improved")
+    static class BestWeightEvent extends Event {
+        @Label("Workbook")
+        String workbook;
+        @Label("Phase")
+        String phase;
+        @Label("Weight")
+        double weight;
+        @Label("Samples")
+        long samples;
+    }
+
+    @Name("demo.Sampling")
+    @Label("Sampling")
+    @Category("Build Orders")
+    @Description("Summary of the random sampling of a workbook")
+    static class SamplingEvent extends Event {
+        @Label("Workbook")
+        String workbook;
+        @Label("Samples")
+        long samples;
+        @Label("Duplicates")
+        long duplicates;
+        @Label("Stop Reason")
+        String reason;
+    }
+
+    // A running phase; closing it records its duration and commits its event
+    final class Phase implements AutoCloseable {
+        private final String name;
+        private final long started = System.nanoTime();
+        private final PhaseEvent event = new PhaseEvent();
+
+        private Phase(String name) {
+            this.name = name;
+            currentPhase = name;
+            event.begin();
+        }
+
+        @Override
+        public void close() {
+            long nanos = System.nanoTime() - started;
+            event.end();
+            if (event.shouldCommit()) {
+                event.workbook = workbook;
+                event.phase = name;
+                event.commit();
+            }
+            synchronized (RunStatistics.this) {
+                phaseNames.add(name);
+                phaseNanos.add(nanos);
+            }
+        }
+    }
+
+    final Histogram draw = new Histogram();
+    final Histogram dedupe = new Histogram();
+    final Histogram writeRow = new Histogram();
+    final Histogram peakFrontier = new Histogram();
+    final LongAdder samples = new LongAdder();
+    final LongAdder duplicates = new LongAdder();
+    final LongAdder abandoned = new LongAdder();
+
+    private final long started = System.nanoTime();
+    private volatile String workbook = "";
+    private volatile String currentPhase = "";
+    private int vertices;
+    private String stopReason = "";
+    private long samplingNanos;
+    private final List<String> phaseNames = new ArrayList<>();
+    private final List<Long> phaseNanos = new ArrayList<>();
+    // Best weight over time: milliseconds since the start, samples drawn by then, weight
+    private final List<double[]> curve = new ArrayList<>();
+
+    void setWorkbook(String workbook) {
+        this.workbook = workbook;
+    }
+
+    synchronized void setVertices(int vertices) {
+        this.vertices = vertices;
+    }
+
+    Phase phase(String name) {
+        return new Phase(name);
+    }
+
+    // Record weight as a point of the curve if it beats the last one
+    void best(double weight) {
+        long drawn = samples.sum();
+        synchronized (this) {
+            if (!curve.isEmpty() && weight <= curve.get(curve.size() - 1)[2]) {
+                return;
+            }
+            double[] point = {(System.nanoTime() - started) / 1e6, drawn, weight};
+            if (curve.size() == MAX_CURVE_POINTS) {
+                // Keep the first points and the latest improvement
+                curve.set(MAX_CURVE_POINTS - 1, point);
+            } else {
+                curve.add(point);
+            }
+        }
+        BestWeightEvent event = new BestWeightEvent();
+        if (event.shouldCommit()) {
+            event.workbook = workbook;
+            event.phase = currentPhase;
+            event.weight = weight;
+            event.samples = drawn;
+            event.commit();
+        }
+    }
+
+    void samplingDone(long nanos, StopPolicy.Reason reason) {
+        synchronized (this) {
+            samplingNanos = nanos;
+            stopReason = reason.description;
+        }
+        SamplingEvent event = new SamplingEvent();
+        if (event.shouldCommit()) {
+            event.workbook = workbook;
+            event.samples = samples.sum();
+            event.duplicates = duplicates.sum();
+            event.reason = reason.description;
+            event.commit();
+        }
+    }
+
+    double samplesPerSecond() {
+        long nanos;
+        synchronized (this) {
+            nanos = samplingNanos;
+        }
+        return nanos == 0 ? 0.0 : samples.sum() * 1e9 / nanos;
+    }
+
+    double duplicateRate() {
+        long n = samples.sum();
+        return n == 0 ? 0.0 : (double) duplicates.sum() / n;
+    }
+
+    // The summary as label/value rows; numbers stay numbers so that a sheet can compute with them
+    synchronized List<Object[]> summaryRows() {
+        List<Object[]> rows = new ArrayList<>();
+        rows.add(new Object[]{"Workbook", workbook});
+        rows.add(new Object[]{"Nodes", vertices});
+        for (int i = 0; i < phaseNames.size(); i++) {
+            rows.add(new Object[]{phaseNames.get(i) + " ms", phaseNanos.get(i) / 1e6});
+        }
+        rows.add(new Object[]{"Samples", samples.sum()});
+        rows.add(new Object[]{"Samples per second", samplesPerSecond()});
+        rows.add(new Object[]{"Duplicate rate", duplicateRate()});
+        rows.add(new Object[]{"Abandoned draws", abandoned.sum()});
+        rows.add(new Object[]{"Sampling stopped by", stopReason});
+        addHistogram(rows, "Draw us", draw, 1e3);
+        addHistogram(rows, "Dedupe us", dedupe, 1e3);
+        addHistogram(rows, "Write row us", writeRow, 1e3);
+        addHistogram(rows, "Peak frontier", peakFrontier, 1);
+        return rows;
+    }
+
+    private static void addHistogram(List<Object[]> rows, String name, Histogram histogram, double unit) {
+        if (histogram.count() == 0) {
+            return;
+        }
+        rows.add(new Object[]{name + " mean", histogram.mean() / unit});
+        rows.add(new Object[]{name + " p50", histogram.percentile(0.5) / unit});
+        rows.add(new Object[]{name + " p90", histogram.percentile(0.9) / unit});
+        rows.add(new Object[]{name + " p99", histogram.percentile(0.99) / unit});
+        rows.add(new Object[]{name + " max", histogram.max() / unit});
+    }
+
+    // Points of the best weight curve: milliseconds, samples, weight
+    synchronized List<double[]> curve() {
+        List<double[]> points = new ArrayList<>(curve.size());
+        for (double[] point : curve) {
+            points.add(point.clone());
+        }
+        return points;
+    }
+
+    void writeJson(Path path) throws IOException {
+        try (Writer out = Files.newBufferedWriter(path, StandardCharsets.UTF_8)) {
+            out.write("{\n");
+            for (Object[] row : summaryRows()) {
+                out.write("  " + jsonString((String) row[0]) + ": " + jsonValue(row[1]) + ",\n");
+            }
+            out.write("  \"Best weight over time\": [");
+            List<double[]> points = curve();
+            for (int i = 0; i < points.size(); i++) {
+                double[] point = points.get(i);
+                out.write(String.format(Locale.ROOT, "%s\n    {\"ms\": %.3f, \"samples\": %d, \"weight\": %.2f}",
+                        i == 0 ? "" : ",", point[0], (long) point[1], point[2]));
+            }
+            out.write(points.isEmpty() ? "]\n}\n" : "\n  ]\n}\n");
+        }
+    }
+
+    private static String jsonValue(Object value) {
+        if (value instanceof Double) {
+            double d = (Double) value;
+            return Double.isFinite(d) ? String.format(Locale.ROOT, "%.3f", d) : "null";
+        }
+        if (value instanceof Number) {
+            return value.toString();
+        }
+        return jsonString(String.valueOf(value));
+    }
+
+    private static String jsonString(String text) {
+        StringBuilder sb = new StringBuilder("\"");
+        for (char c : text.toCharArray()) {
+            if (c == '"' || c == '\\') {
+                sb.append('\\').append(c);
+            } else if (c < 0x20) {
+                sb.append(String.format("\\u%04x", (int) c));
+            } else {
+                sb.append(c);
+            }
+        }
+        return sb.append('"').toString();
+    }
+}
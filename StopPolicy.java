@@ -0,0 +1,227 @@
+package demo;
+
+// When the sampler should stop drawing build orders. The time budget always applies, the other
+// criteria only once they are set:
+//   maxSamples   orders drawn, duplicates included
+//   maxOrders    distinct orders in the store, the old fixed limit
+//   patience     orders drawn since the best weight last improved
+//   saturation   share of duplicates among the draws of one window
+//   coverage     estimated share of the orders the sampler can produce that were already drawn
+// The distinct count behind coverage comes from a HyperLogLog sketch of the fingerprints of the
+// sampler's own draws, so it takes 4 KB however long the run is and ignores the orders other
+// phases put into the store. Coverage then follows from the number of draws n and distinct
+// orders d as if there were N equally likely orders: d = N (1 - e^(-n/N)). Orders are not equally
+// likely, so this overestimates the coverage somewhat, which matters little next to saturation.
+class StopPolicy {
+    enum Reason {
+        BUDGET("time budget used up"),
+        SAMPLES("sample budget used up"),
+        ORDERS("distinct order limit reached"),
+        NO_IMPROVEMENT("no improvement"),
+        SATURATED("only duplicates"),
+        COVERED("nearly all orders seen"),
+        STOPPED("stopped");
+
+        final String description;
+
+        Reason(String description) {
+            this.description = description;
+        }
+    }
+
+    static final int SKETCH_BITS = 12;
+    static final int DEFAULT_WINDOW = 10_000;
+
+    private final long budgetMillis;
+    private long maxSamples = Long.MAX_VALUE;
+    private int maxOrders = Integer.MAX_VALUE;
+    private long patience = Long.MAX_VALUE;
+    private int window = DEFAULT_WINDOW;
+    // 0 switches saturation and coverage off
+    private double saturation;
+    private double coverage;
+
+    StopPolicy(long budgetMillis) {
+        if (budgetMillis < 0) {
+            throw new IllegalArgumentException("Budget must not be negative, got " + budgetMillis);
+        }
+        this.budgetMillis = budgetMillis;
+    }
+
+    // The old behaviour: maxOrders distinct orders or budgetMillis, whichever comes first
+    static StopPolicy fixed(int maxOrders, long budgetMillis) {
+        return new StopPolicy(budgetMillis).maxOrders(maxOrders);
+    }
+
+    // Keep sampling for up to budgetMillis while it still finds better or new orders
+    static StopPolicy adaptive(long budgetMillis) {
+        return new StopPolicy(budgetMillis).patience(200_000).saturation(0.99, DEFAULT_WINDOW).coverage(0.99);
+    }
+
+    StopPolicy maxSamples(long maxSamples) {
+        this.maxSamples = maxSamples;
+        return this;
+    }
+
+    StopPolicy maxOrders(int maxOrders) {
+        this.maxOrders = maxOrders;
+        return this;
+    }
+
+    StopPolicy patience(long patience) {
+        this.patience = patience;
+        return this;
+    }
+
+    // Stop once at least share of the draws in a window of window draws were duplicates
+    StopPolicy saturation(double share, int window) {
+        if (window < 1) {
+            throw new IllegalArgumentException("Window must hold at least one draw, got " + window);
+        }
+        this.saturation = share;
+        this.window = window;
+        return this;
+    }
+
+    // Stop once the estimated coverage reaches share; judged at the end of every window
+    StopPolicy coverage(double share) {
+        this.coverage = share;
+        return this;
+    }
+
+    int maxOrders() {
+        return maxOrders;
+    }
+
+    // Start judging a run whose best order so far weighs bestWeight
+    Tracker start(double bestWeight) {
+        return new Tracker(bestWeight);
+    }
+
+    // The state of one run, shared by all sampler threads
+    final class Tracker {
+        private final long deadline = System.nanoTime() + budgetMillis * 1_000_000L;
+        private final byte[] registers = new byte[1 << SKETCH_BITS];
+        private double bestWeight;
+        private long samples;
+        // Draws that were recorded, as opposed to abandoned; the window and the coverage estimate count these
+        private long recorded;
+        private long lastImprovement;
+        private long windowDuplicates;
+        private volatile Reason reason;
+
+        private Tracker(double bestWeight) {
+            this.bestWeight = bestWeight;
+        }
+
+        // False once any criterion says stop
+        boolean running() {
+            if (reason == null && System.nanoTime() >= deadline) {
+                stop(Reason.BUDGET);
+            }
+            return reason == null;
+        }
+
+        synchronized void stop(Reason why) {
+            if (reason == null) {
+                reason = why;
+            }
+        }
+
+        // Account for one draw: its fingerprint, whether the store had not seen it yet, its
+        // weight, and the number of distinct orders in the store afterwards
+        synchronized void record(long fingerprint, boolean distinct, double weight, int distinctOrders) {
+            samples++;
+            recorded++;
+            int register = (int) (fingerprint >>> (64 - SKETCH_BITS));
+            int rank = Long.numberOfLeadingZeros((fingerprint << SKETCH_BITS) | (1L << (SKETCH_BITS - 1))) + 1;
+            if (rank > registers[register]) {
+                registers[register] = (byte) rank;
+            }
+            if (weight > bestWeight) {
+                bestWeight = weight;
+                lastImprovement = samples;
+            }
+            if (!distinct) {
+                windowDuplicates++;
+            }
+
+            if (samples >= maxSamples) {
+                stop(Reason.SAMPLES);
+            } else if (distinctOrders >= maxOrders) {
+                stop(Reason.ORDERS);
+            } else if (samples - lastImprovement >= patience) {
+                stop(Reason.NO_IMPROVEMENT);
+            } else if (recorded % window == 0) {
+                if (saturation > 0 && windowDuplicates >= saturation * window) {
+                    stop(Reason.SATURATED);
+                } else if (coverage > 0 && estimatedCoverage() >= coverage) {
+                    stop(Reason.COVERED);
+                }
+                windowDuplicates = 0;
+            }
+        }
+
+        // Account for draws that were abandoned before they were complete; they were no
+        // improvement, but are not part of the sketch
+        synchronized void abandoned(int draws) {
+            samples += draws;
+            if (samples >= maxSamples) {
+                stop(Reason.SAMPLES);
+            } else if (samples - lastImprovement >= patience) {
+                stop(Reason.NO_IMPROVEMENT);
+            }
+        }
+
+        synchronized long samples() {
+            return samples;
+        }
+
+        synchronized long abandoned() {
+            return samples - recorded;
+        }
+
+        // Why the run stopped, null while it is running
+        Reason reason() {
+            return reason;
+        }
+
+        // HyperLogLog estimate of the distinct orders drawn, with linear counting for small counts
+        synchronized double estimatedDistinct() {
+            int m = registers.length;
+            double sum = 0.0;
+            int empty = 0;
+            for (byte r : registers) {
+                sum += 1.0 / (1L << r);
+                if (r == 0) {
+                    empty++;
+                }
+            }
+            double estimate = 0.7213 / (1 + 1.079 / m) * m * m / sum;
+            if (estimate <= 2.5 * m && empty > 0) {
+                estimate = m * Math.log((double) m / empty);
+            }
+            return Math.min(estimate, recorded);
+        }
+
+        // Share of all orders already drawn, solving d / n = (1 - e^(-x)) / x for x = n / N;
+        // the coverage d / N is then 1 - e^(-x)
+        synchronized double estimatedCoverage() {
+            if (recorded == 0) {
+                return 0.0;
+            }
+            double ratio = estimatedDistinct() / recorded;
+            double low = 1e-9;
+            double high = 50.0;
+            for (int i = 0; i < 100; i++) {
+                double x = (low + high) / 2;
+                if ((1 - Math.exp(-x)) / x > ratio) {
+                    low = x;
+                } else {
+                    high = x;
+                }
+            }
+            return 1 - Math.exp(-(low + high) / 2);
+        }
+    }
+}
@@ -0,0 +1,51 @@
+package demo;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.RunnerException;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+// JMH benchmarks for the longest-path phase of the average strategy in nachDurchschnitt.java,
+// the part the old dfs spent its time in: LongestPathEngine on the bundled edge lists.
+// Built and run like PlanningBenchmark, main is demo.AverageStrategyBenchmark.
+// Without arguments main runs the suite at 1, 2 and all cores with the GC profiler, any
+// arguments are passed to the JMH command line instead.
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class AverageStrategyBenchmark {
+
+    @State(Scope.Benchmark)
+    public static class GraphState {
+        @Param({"GraphGerichtetKlein.txt", "GraphGerichtetMittel.txt", "GraphGerichtetGroß.txt"})
+        public String graphFile;
+
+        GraphIndex graph;
+
+        @Setup(Level.Trial)
+        public void load() throws IOException {
+            graph = EdgeListReader.load(graphFile);
+        }
+    }
+
+    @Benchmark
+    public PathMatrix longestPaths(GraphState state) {
+        int vertices = state.graph.vertices;
+        int[][] distanceMatrix = new int[vertices][vertices];
+        int[][] stepsMatrix = new int[vertices][vertices];
+        PathMatrix pathMatrix = new PathMatrix(vertices);
+        new LongestPathEngine(state.graph).compute(distanceMatrix, stepsMatrix, pathMatrix);
+        return pathMatrix;
+    }
+
+    public static void main(String[] args) throws RunnerException, IOException {
+        if (args.length > 0) {
+            org.openjdk.jmh.Main.main(args);
+            return;
+        }
+        PlanningBenchmark.runScaling(AverageStrategyBenchmark.class);
+    }
+}
@@ -0,0 +1,119 @@
+package demo;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+
+// JMH benchmarks for the planning hot paths of Graph on the bundled graphs: the edge
+// lists are read through EdgeListReader with node ids as names, graph_data.xlsx through the
+// workbook reader.
+// Build and run from the repository root, together with the demo package:
+//   javac -cp <poi + jmh-core + jmh-generator-annprocess> -d bench-out <package demo files> benchmarks/PlanningBenchmark.java benchmarks/WorkbookBenchmark.java
+//   java -cp bench-out:<poi, jmh-core and their dependencies> demo.PlanningBenchmark
+// Without arguments main runs the suite at 1, 2 and all cores with the GC profiler, any
+// arguments are passed to the JMH command line instead.
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PlanningBenchmark {
+    @State(Scope.Benchmark)
+    public static class GraphState {
+        @Param({"GraphGerichtetKlein.txt", "GraphGerichtetMittel.txt", "GraphGerichtetGroß.txt", "graph_data.xlsx"})
+        public String graphFile;
+
+        Graph graph;
+        List<String> startNames;
+        int[] startNodes;
+        List<String> buildOrder;
+
+        @Setup(Level.Trial)
+        public void load() throws IOException {
+            if (graphFile.endsWith(".xlsx")) {
+                graph = new Graph();
+                startNames = GraphWorkbookReader.read(new File(graphFile), graph::addEdge);
+            } else {
+                graph = loadEdgeList(graphFile);
+                startNames = List.of("0");
+            }
+            startNodes = graph.toIndices(startNames);
+            buildOrder = graph.findOptimalPathFromMultipleSources(startNames);
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class ThreadState {
+        SplittableRandom random;
+        int[] buildOrder;
+
+        @Setup(Level.Trial)
+        public void init(GraphState state) {
+            random = new SplittableRandom(Thread.currentThread().getId());
+            buildOrder = new int[state.graph.getVertices()];
+        }
+    }
+
+    // Node ids become the node names
+    static Graph loadEdgeList(String graphFile) throws IOException {
+        Graph graph = new Graph();
+        GraphIndex index = EdgeListReader.load(graphFile);
+        for (int v = 0; v < index.vertices; v++) {
+            for (int k = index.outOffsets[v]; k < index.outOffsets[v + 1]; k++) {
+                graph.addEdge(String.valueOf(v), String.valueOf(index.outTargets[k]), index.outWeights[k]);
+            }
+        }
+        return graph;
+    }
+
+    @Benchmark
+    public int[] drawBuildOrder(GraphState state, ThreadState thread) {
+        return state.graph.findOptimalPathFromMultipleSources(state.startNodes, thread.random, thread.buildOrder);
+    }
+
+    // The List<String> entry point, including the translation between names and ids
+    @Benchmark
+    public List<String> drawNamedBuildOrder(GraphState state) {
+        return state.graph.findOptimalPathFromMultipleSources(state.startNames);
+    }
+
+    @Benchmark
+    public double calculateTotalWeight(GraphState state) {
+        return state.graph.calculateTotalWeight(state.buildOrder);
+    }
+
+    // The thread counts the suite is run with: 1, 2 and all cores, as far as there are cores
+    static int[] threadCounts() {
+        int cores = Runtime.getRuntime().availableProcessors();
+        return IntStream.of(1, 2, cores).filter(t -> t <= cores).distinct().toArray();
+    }
+
+    static void runScaling(Class<?> benchmark) throws RunnerException {
+        for (int threads : threadCounts()) {
+            Options options = new OptionsBuilder()
+                    .include(benchmark.getName())
+                    .threads(threads)
+                    .addProfiler(GCProfiler.class)
+                    .build();
+            new Runner(options).run();
+        }
+    }
+
+    public static void main(String[] args) throws RunnerException, IOException {
+        if (args.length > 0) {
+            org.openjdk.jmh.Main.main(args);
+            return;
+        }
+        runScaling(PlanningBenchmark.class);
+    }
+}
@@ -0,0 +1,77 @@
+package demo;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.RunnerException;
+
+import java.io.IOException;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+// JMH benchmarks for the random strategy of nachZufall.java on the bundled edge lists: loading
+// them with EdgeListReader, drawing orders with RandomSampler and scoring them with GraphIndex.
+// Built and run like PlanningBenchmark, main is demo.RandomStrategyBenchmark.
+// Without arguments main runs the suite at 1, 2 and all cores with the GC profiler, any
+// arguments are passed to the JMH command line instead (e.g. -prof gc -t 4 drawBuildOrder).
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class RandomStrategyBenchmark {
+
+    @State(Scope.Benchmark)
+    public static class GraphState {
+        @Param({"GraphGerichtetKlein.txt", "GraphGerichtetMittel.txt", "GraphGerichtetGroß.txt"})
+        public String graphFile;
+
+        GraphIndex graph;
+        RandomSampler sampler;
+        int[] startNodes = {0};
+        int[] buildOrder;
+
+        @Setup(Level.Trial)
+        public void load() throws IOException {
+            graph = EdgeListReader.load(graphFile);
+            sampler = new RandomSampler(graph);
+            buildOrder = new int[graph.vertices];
+            sampler.draw(startNodes, new SplittableRandom(0), buildOrder, Double.NEGATIVE_INFINITY);
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class ThreadState {
+        SplittableRandom random;
+        int[] buildOrder;
+
+        @Setup(Level.Trial)
+        public void init(GraphState state) {
+            random = new SplittableRandom(Thread.currentThread().getId());
+            buildOrder = new int[state.graph.vertices];
+        }
+    }
+
+    @Benchmark
+    public double drawBuildOrder(GraphState state, ThreadState thread) {
+        return state.sampler.draw(state.startNodes, thread.random, thread.buildOrder, Double.NEGATIVE_INFINITY);
+    }
+
+    @Benchmark
+    public double calculateTotalWeight(GraphState state) {
+        return state.graph.weight(state.buildOrder);
+    }
+
+    // Loads through the binary cache after the first call, which is what repeated runs see
+    @Benchmark
+    public void loadFromFile(GraphState state, Blackhole blackhole) throws IOException {
+        blackhole.consume(EdgeListReader.load(state.graphFile));
+    }
+
+    public static void main(String[] args) throws RunnerException, IOException {
+        if (args.length > 0) {
+            org.openjdk.jmh.Main.main(args);
+            return;
+        }
+        PlanningBenchmark.runScaling(RandomStrategyBenchmark.class);
+    }
+}
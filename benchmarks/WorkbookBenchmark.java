@@ -0,0 +1,206 @@
+package demo;
+
+import org.apache.poi.ss.usermodel.*;
+import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.RunnerException;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+// JMH benchmarks for the Excel boundary of Graph: importing graph_data.xlsx with the DOM
+// readers Graph used to have, kept below as the baseline, and with the streaming
+// GraphWorkbookReader, and writing sampled build orders with BuildOrderWriter.
+// Built and run like PlanningBenchmark, main is demo.WorkbookBenchmark.
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class WorkbookBenchmark {
+
+    @State(Scope.Benchmark)
+    public static class ImportState {
+        @Param({"graph_data.xlsx"})
+        public String workbook;
+    }
+
+    @State(Scope.Benchmark)
+    public static class ExportState {
+        @Param({"1000"})
+        public int orders;
+
+        @Param({"xlsx", "csv"})
+        public String format;
+
+        Set<List<String>> buildOrders;
+        Map<List<String>, Double> buildOrderWeights;
+
+        @Setup(Level.Trial)
+        public void sample() throws IOException {
+            Graph graph = new Graph();
+            List<String> startNodes = GraphWorkbookReader.read(new File("graph_data.xlsx"), graph::addEdge);
+            buildOrders = new LinkedHashSet<>();
+            buildOrderWeights = new HashMap<>();
+            while (buildOrders.size() < orders) {
+                List<String> order = graph.findOptimalPathFromMultipleSources(startNodes);
+                if (buildOrders.add(order)) {
+                    buildOrderWeights.put(order, graph.calculateTotalWeight(order));
+                }
+            }
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class OutputFile {
+        File file;
+
+        @Setup(Level.Trial)
+        public void create(ExportState state) throws IOException {
+            file = File.createTempFile("build_orders", "." + state.format);
+        }
+
+        @TearDown(Level.Trial)
+        public void delete() throws IOException {
+            Files.deleteIfExists(file.toPath());
+        }
+    }
+
+    @Benchmark
+    public void readWorkbookDom(ImportState state, Blackhole blackhole) throws IOException {
+        blackhole.consume(readStartNodesFromExcel(state.workbook));
+        blackhole.consume(readEdgesFromExcel(state.workbook));
+    }
+
+    @Benchmark
+    public Graph readWorkbookStreaming(ImportState state) throws IOException {
+        Graph graph = new Graph();
+        GraphWorkbookReader.read(new File(state.workbook), graph::addEdge);
+        return graph;
+    }
+
+    @Benchmark
+    public void writeBuildOrders(ExportState state, OutputFile output) throws IOException {
+        try (BuildOrderWriter writer = BuildOrderWriter.open(output.file.getPath(), null)) {
+            for (List<String> order : state.buildOrders) {
+                writer.write(order, state.buildOrderWeights.get(order));
+            }
+        }
+    }
+
+    // The DOM readers of Graph before GraphWorkbookReader, which load the whole workbook
+    static List<Edge> readEdgesFromExcel(String filePath) throws IOException {
+        List<Edge> edges = new ArrayList<>();
+        FileInputStream fis = new FileInputStream(filePath);
+        Workbook workbook = new XSSFWorkbook(fis);
+        Sheet sheet = workbook.getSheetAt(1);  // Second sheet should be the Edges sheet
+    
+        for (Row row : sheet) {
+            if (row.getRowNum() == 0) {
+                continue;
+            }
+    
+            Cell sourceCell = row.getCell(0);
+            Cell destinationCell = row.getCell(1);
+            Cell weightCell = row.getCell(2);
+    
+            String source;
+            String destination;
+            int weight;
+    
+            if (sourceCell == null) {
+                throw new IllegalStateException("Source cell is null for row: " + row.getRowNum());
+            }
+            switch (sourceCell.getCellType()) {
+                case STRING:
+                    source = sourceCell.getStringCellValue();
+                    break;
+                case NUMERIC:
+                    source = String.valueOf((int) sourceCell.getNumericCellValue());
+                    break;
+                case BLANK:
+                    throw new IllegalStateException("Source cell is blank for row: " + row.getRowNum());
+                default:
+                    throw new IllegalStateException("Unexpected cell type encountered for source cell in row: " + row.getRowNum());
+            }
+    
+            if (destinationCell == null) {
+                throw new IllegalStateException("Destination cell is null for row: " + row.getRowNum());
+            }
+            switch (destinationCell.getCellType()) {
+                case STRING:
+                    destination = destinationCell.getStringCellValue();
+                    break;
+                case NUMERIC:
+                    destination = String.valueOf((int) destinationCell.getNumericCellValue());
+                    break;
+                case BLANK:
+                    throw new IllegalStateException("Destination cell is blank for row: " + row.getRowNum());
+                default:
+                    throw new IllegalStateException("Unexpected cell type encountered for destination cell in row: " + row.getRowNum());
+            }
+    
+            if (weightCell == null || weightCell.getCellType() != CellType.NUMERIC) {
+                throw new IllegalStateException("Weight should be numeric for row: " + row.getRowNum());
+            }
+            weight = (int) weightCell.getNumericCellValue();
+    
+            edges.add(new Edge(source, destination, weight));
+        }
+    
+        workbook.close();
+        fis.close();
+        return edges;
+    }
+
+    static List<String> readStartNodesFromExcel(String filePath) throws IOException {
+        List<String> startNodes = new ArrayList<>();
+        FileInputStream fis = new FileInputStream(filePath);
+        Workbook workbook = new XSSFWorkbook(fis);
+        Sheet sheet = workbook.getSheetAt(0);  // First sheet should be the Einstellungen sheet
+
+        if (sheet == null) {
+            throw new IllegalStateException("Sheet 'Einstellungen' not found in the Excel file.");
+        }
+
+        for (Row row : sheet) {
+            Cell nodeCell = row.getCell(0);
+            String node;
+
+            if (nodeCell == null) {
+                continue;  // Skip empty rows
+            }
+            switch (nodeCell.getCellType()) {
+                case STRING:
+                    node = nodeCell.getStringCellValue();
+                    break;
+                case NUMERIC:
+                    node = String.valueOf((int) nodeCell.getNumericCellValue());
+                    break;
+                case BLANK:
+                    continue;  // Skip blank cells
+                default:
+                    throw new IllegalStateException("Unexpected cell type encountered for node cell in row: " + row.getRowNum());
+            }
+
+            startNodes.add(node);
+        }
+
+        workbook.close();
+        fis.close();
+        return startNodes;
+    }
+
+    public static void main(String[] args) throws RunnerException, IOException {
+        if (args.length > 0) {
+            org.openjdk.jmh.Main.main(args);
+            return;
+        }
+        PlanningBenchmark.runScaling(WorkbookBenchmark.class);
+    }
+}
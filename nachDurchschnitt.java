@@ -1,40 +1,89 @@
+package demo;
+
 import java.util.*;
 
-class Graph {
-    private final int[][] adjacencyMatrix;
+// The average strategy: from the nodes built so far, always go to the node with the best
+// average weight per step over the longest path there, and build the nodes of that path. The
+// longest paths come from LongestPathEngine over the GraphIndex of the graph. buildOrder is the
+// "average" strategy of PlanningCore; the matrices are dense, so it is meant for small graphs.
+class nachDurchschnitt {
+    static final int MAX_VERTICES = 200;
+
+    private final GraphIndex index;
     private final int vertices;
-    final static int INF = -99999;
 
-    public Graph(int vertices) {
-        this.vertices = vertices;
-        adjacencyMatrix = new int[vertices][vertices];
+    nachDurchschnitt(GraphIndex index) {
+        this.index = index;
+        vertices = index.vertices;
+    }
 
-        // Initialize adjacencyMatrix with -INF except the diagonal
-        for (int i = 0; i < vertices; i++) {
-            for (int j = 0; j < vertices; j++) {
-                if (i == j) {
-                    adjacencyMatrix[i][j] = 0;
-                } else {
-                    adjacencyMatrix[i][j] = INF;
-                }
+    public void findOptimalPathFromMultipleSources(List<Integer> startNodes) {
+        int[][] distanceMatrix = new int[vertices][vertices];
+        int[][] stepsMatrix = new int[vertices][vertices];
+        PathMatrix pathMatrix = new PathMatrix(vertices);
+        int[][] averageMatrix = averages(distanceMatrix, stepsMatrix, pathMatrix);
+
+        GraphPrinter.printMatrix(GraphPrinter.toAdjacencyMatrix(index), "Adjacency Matrix");
+        GraphPrinter.printMatrix(distanceMatrix, "Distance Matrix");
+        GraphPrinter.printMatrix(stepsMatrix, "Steps Matrix");
+        GraphPrinter.printMatrix(averageMatrix, "Average Matrix");
+        printPathMatrix(pathMatrix, "Path Matrix");
+
+        int[] completePath = greedyPath(startNodes.stream().mapToInt(Integer::intValue).toArray(), averageMatrix, pathMatrix);
+        StringBuilder completePathText = new StringBuilder();
+        for (int k = 0; k < completePath.length; k++) {
+            if (k > 0) {
+                completePathText.append(" -> ");
             }
+            completePathText.append(completePath[k]);
         }
+        System.out.println("Complete path: " + completePathText);
     }
 
-    public void addEdge(int source, int destination, int weight) {
-        adjacencyMatrix[source][destination] = weight;
-    }
-
-    public void findOptimalPathFromMultipleSources(List<Integer> startNodes) {
+    // The greedy's path as a complete build order: the nodes of the paths in the order they are
+    // built, then every node the paths left out, each as soon as it is a start node or follows a
+    // built node
+    int[] buildOrder(int[] startNodes) {
         int[][] distanceMatrix = new int[vertices][vertices];
         int[][] stepsMatrix = new int[vertices][vertices];
-        String[][] pathMatrix = new String[vertices][vertices];
-        int[][] averageMatrix = new int[vertices][vertices];
+        PathMatrix pathMatrix = new PathMatrix(vertices);
+        int[] path = greedyPath(startNodes, averages(distanceMatrix, stepsMatrix, pathMatrix), pathMatrix);
 
-        for (int i = 0; i < vertices; i++) {
-            boolean[] visited = new boolean[vertices];
-            dfs(i, i, visited, 0, 0, distanceMatrix, stepsMatrix, pathMatrix, String.valueOf(i));
+        int[] order = Arrays.copyOf(path, vertices);
+        boolean[] built = new boolean[vertices];
+        for (int node : path) {
+            built[node] = true;
         }
+        int length = path.length;
+        for (boolean added = true; added && length < vertices; ) {
+            added = false;
+            for (int v = 0; v < vertices; v++) {
+                if (!built[v] && (index.isStart(v) || hasBuiltPredecessor(v, built))) {
+                    built[v] = true;
+                    order[length++] = v;
+                    added = true;
+                }
+            }
+        }
+        if (length < vertices) {
+            throw new IllegalStateException("Only " + length + " of " + vertices + " nodes are reachable from the start nodes");
+        }
+        return order;
+    }
+
+    private boolean hasBuiltPredecessor(int v, boolean[] built) {
+        for (int k = index.inOffsets[v]; k < index.inOffsets[v + 1]; k++) {
+            if (built[index.inSources[k]]) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // Fill in the longest paths and return the average weight per step along them
+    private int[][] averages(int[][] distanceMatrix, int[][] stepsMatrix, PathMatrix pathMatrix) {
+        int[][] averageMatrix = new int[vertices][vertices];
+        new LongestPathEngine(index).compute(distanceMatrix, stepsMatrix, pathMatrix);
 
         // Calculate average distance per step
         for (int i = 0; i < vertices; i++) {
@@ -44,97 +93,74 @@ class Graph {
                 }
             }
         }
+        return averageMatrix;
+    }
 
-        printMatrix(adjacencyMatrix, "Adjacency Matrix");
-        printMatrix(distanceMatrix, "Distance Matrix");
-        printMatrix(stepsMatrix, "Steps Matrix");
-        printMatrix(averageMatrix, "Average Matrix");
-        printPathMatrix(pathMatrix, "Path Matrix");
+    // The nodes of the paths the greedy takes, each once, in the order it reaches them
+    private int[] greedyPath(int[] startNodes, int[][] averageMatrix, PathMatrix pathMatrix) {
+        // For every node not visited yet, the best average from any current node. Keeping it up to
+        // date as nodes are added replaces rescanning all current nodes on every step; ties go to
+        // the earlier current node and then the lower node, as in a scan in that order.
+        boolean[] visitedNodes = new boolean[vertices];
+        int[] bestAverage = new int[vertices];
+        int[] bestFrom = new int[vertices];
+        int[] bestFromRank = new int[vertices];
+        Arrays.fill(bestAverage, Integer.MIN_VALUE);
+        Arrays.fill(bestFrom, -1);
+        for (int startNode : startNodes) {
+            visitedNodes[startNode] = true;
+        }
+        int currentCount = 0;
+        for (int startNode : startNodes) {
+            addCurrentNode(startNode, currentCount++, averageMatrix, visitedNodes, bestAverage, bestFrom, bestFromRank);
+        }
 
-        Set<Integer> visitedNodes = new HashSet<>(startNodes);
-        List<Integer> currentNodes = new ArrayList<>(startNodes);
-        List<String> completePath = new ArrayList<>();
+        int[] completePath = new int[vertices];
+        int completeLength = 0;
+        long[] inCompletePath = new long[(vertices + 63) >>> 6];
 
         while (true) {
-            int maxAverage = Integer.MIN_VALUE;
-            String maxAveragePath = null;
             int nextNode = -1;
-
-            for (int currentNode : currentNodes) {
-                for (int i = 0; i < vertices; i++) {
-                    if (!visitedNodes.contains(i) && averageMatrix[currentNode][i] > maxAverage) {
-                        maxAverage = averageMatrix[currentNode][i];
-                        maxAveragePath = pathMatrix[currentNode][i];
-                        nextNode = i;
-                    }
+            for (int i = 0; i < vertices; i++) {
+                if (visitedNodes[i] || bestFrom[i] == -1) {
+                    continue;
+                }
+                if (nextNode == -1 || bestAverage[i] > bestAverage[nextNode]
+                        || (bestAverage[i] == bestAverage[nextNode] && bestFromRank[i] < bestFromRank[nextNode])) {
+                    nextNode = i;
                 }
             }
 
             if (nextNode == -1) break;
 
-            visitedNodes.add(nextNode);
-            currentNodes.add(nextNode);
+            int[] path = pathMatrix.path(bestFrom[nextNode], nextNode);
+            visitedNodes[nextNode] = true;
+            addCurrentNode(nextNode, currentCount++, averageMatrix, visitedNodes, bestAverage, bestFrom, bestFromRank);
 
-            if (maxAveragePath != null) {
-                String[] nodes = maxAveragePath.split(" -> ");
-                for (String node : nodes) {
-                    if (!completePath.contains(node)) {
-                        completePath.add(node);
+            if (path != null) {
+                for (int node : path) {
+                    if ((inCompletePath[node >>> 6] & (1L << node)) == 0) {
+                        inCompletePath[node >>> 6] |= 1L << node;
+                        completePath[completeLength++] = node;
                     }
                 }
             }
         }
-
-        System.out.println("Complete path: " + String.join(" -> ", completePath));
-    }
-
-    private void dfs(int start, int current, boolean[] visited, int currentDistance, int currentSteps, int[][] distanceMatrix, int[][] stepsMatrix, String[][] pathMatrix, String path) {
-        visited[current] = true;
-        for (int i = 0; i < vertices; i++) {
-            if (adjacencyMatrix[current][i] != INF && !visited[i]) {
-                int newDistance = currentDistance + adjacencyMatrix[current][i];
-                int newSteps = currentSteps + 1;
-                String newPath = path + " -> " + i;
-
-                if (newDistance > distanceMatrix[start][i]) {
-                    distanceMatrix[start][i] = newDistance;
-                    stepsMatrix[start][i] = newSteps;
-                    pathMatrix[start][i] = newPath;
-                }
-
-                dfs(start, i, visited, newDistance, newSteps, distanceMatrix, stepsMatrix, pathMatrix, newPath);
-            }
-        }
-        visited[current] = false;
+        return Arrays.copyOf(completePath, completeLength);
     }
 
-    // Print matrix with a given name
-    void printMatrix(int matrix[][], String matrixName) {
-        System.out.println(matrixName + ":");
-
-        // Print column headers
-        System.out.print("      ");
+    private void addCurrentNode(int node, int rank, int[][] averageMatrix, boolean[] visitedNodes, int[] bestAverage, int[] bestFrom, int[] bestFromRank) {
         for (int i = 0; i < vertices; i++) {
-            System.out.printf("%6d", i);
-        }
-        System.out.println();
-
-        for (int i = 0; i < vertices; ++i) {
-            // Print row header
-            System.out.printf("%6d ", i);
-
-            for (int j = 0; j < vertices; ++j) {
-                if (matrix[i][j] == INF)
-                    System.out.print(" INF ");
-                else
-                    System.out.printf("%6d", matrix[i][j]);
+            if (!visitedNodes[i] && (bestFrom[i] == -1 || averageMatrix[node][i] > bestAverage[i])) {
+                bestAverage[i] = averageMatrix[node][i];
+                bestFrom[i] = node;
+                bestFromRank[i] = rank;
             }
-            System.out.println();
         }
     }
 
     // Print path matrix
-    void printPathMatrix(String matrix[][], String matrixName) {
+    void printPathMatrix(PathMatrix matrix, String matrixName) {
         System.out.println(matrixName + ":");
 
         // Print column headers
@@ -149,50 +175,24 @@ class Graph {
             System.out.printf("%d ", i);
 
             for (int j = 0; j < vertices; ++j) {
-                if (matrix[i][j] == null)
+                if (!matrix.hasPath(i, j))
                     System.out.printf("%27s", "None");
                 else
-                    System.out.printf("%27s", matrix[i][j]);
+                    System.out.printf("%27s", matrix.pathString(i, j));
             }
             System.out.println();
         }
     }
 
-    void printReachable() {
-        // Print reachable points from each vertex with weights
-        for (int i = 0; i < vertices; i++) {
-            String msg = "";
-            for (int j = 0; j < vertices; j++) {
-                if (adjacencyMatrix[i][j] != 0 && adjacencyMatrix[i][j] != INF) {
-                    if (!msg.isEmpty()) {
-                        msg += ", ";
-                    }
-                    msg += j + " (weight: " + adjacencyMatrix[i][j] + ")";
-                }
-            }
-            System.out.println(i + "--> [" + msg + "]");
-        }
-    }
-
     public static void main(String[] args) {
-        Graph g = new Graph(5);
-
-        g.addEdge(0, 1, 2000);
-        g.addEdge(0, 2, 1000);
-        g.addEdge(0, 3, 800);
-        g.addEdge(1, 0, 100);
-        g.addEdge(2, 0, 100);
-        g.addEdge(3, 0, 100);
-        g.addEdge(2, 4, 300);
-        g.addEdge(4, 2, 1000);
-        g.addEdge(1, 3, 800);
-        g.addEdge(3, 1, 2000);
-        g.addEdge(1, 2, 1000);
-        g.addEdge(2, 1, 2000);
-
-        g.printReachable();
+        int[] sources = {0, 0, 0, 1, 2, 3, 2, 4, 1, 3, 1, 2};
+        int[] destinations = {1, 2, 3, 0, 0, 0, 4, 2, 3, 1, 2, 1};
+        int[] weights = {2000, 1000, 800, 100, 100, 100, 300, 1000, 800, 2000, 1000, 2000};
+        GraphIndex graph = GraphIndex.ofEdges(sources, destinations, weights, sources.length);
+
+        GraphPrinter.printReachable(graph);
 
         List<Integer> startNodes = Arrays.asList(4);
-        g.findOptimalPathFromMultipleSources(startNodes);
+        new nachDurchschnitt(graph).findOptimalPathFromMultipleSources(startNodes);
     }
 }